@@ -0,0 +1,30 @@
+#!/usr/bin/env bash
+# Measures time-to-first-request for a PhoneNest launch command.
+# Usage: scripts/measure-startup.sh java [jvm options] -jar PhoneNest-0.0.1-SNAPSHOT.jar
+# The command is started in the background and /actuator/health is polled until it answers.
+set -euo pipefail
+
+PROBE_URL="${STARTUP_PROBE_URL:-http://localhost:8080/actuator/health}"
+TIMEOUT_SECONDS="${STARTUP_TIMEOUT_SECONDS:-120}"
+LOG_FILE="${STARTUP_LOG_FILE:-startup.log}"
+
+start=$(date +%s%N)
+"$@" > "$LOG_FILE" 2>&1 &
+pid=$!
+trap 'kill "$pid" 2>/dev/null || true; wait "$pid" 2>/dev/null || true' EXIT
+
+until curl -sf -o /dev/null "$PROBE_URL"; do
+    if ! kill -0 "$pid" 2>/dev/null; then
+        echo "Application exited before answering $PROBE_URL" >&2
+        cat "$LOG_FILE" >&2
+        exit 1
+    fi
+    if (( ($(date +%s%N) - start) / 1000000000 > TIMEOUT_SECONDS )); then
+        echo "No answer from $PROBE_URL within ${TIMEOUT_SECONDS}s" >&2
+        exit 1
+    fi
+    sleep 0.05
+done
+
+end=$(date +%s%N)
+echo "time-to-first-request: $(( (end - start) / 1000000 )) ms"
@@ -2,12 +2,18 @@ package com.mathias.phonenest;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class PhoneNestApplication {
 
     public static void main(String[] args) {
-        SpringApplication.run(PhoneNestApplication.class, args);
+        SpringApplication application = new SpringApplication(PhoneNestApplication.class);
+        // Record the startup steps so the timeline can be read from /actuator/startup.
+        application.setApplicationStartup(new BufferingApplicationStartup(2048));
+        application.run(args);
     }
 
 }
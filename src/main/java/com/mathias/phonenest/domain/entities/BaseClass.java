@@ -1,11 +1,14 @@
 package com.mathias.phonenest.domain.entities;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.Version;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -26,4 +29,10 @@ public abstract  class BaseClass {
     @UpdateTimestamp
     private LocalDateTime updatedAt;
 
+    // Optimistic-locking version; exposed to clients as the ETag for conditional updates.
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
 }
@@ -5,9 +5,31 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
+import org.hibernate.annotations.SQLDelete;
+import org.hibernate.annotations.SQLRestriction;
 
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Each index starts with deleted_at, so the live-row restriction that every entity query carries
+ * is part of the index lookup, followed by one filter column of the structured contact query and
+ * its (sort key, id) order. The rows themselves are still read from the table.
+ * hasImage is not indexed; it is checked on the rows read through one of these indexes.
+ * Deleting a contact only sets deletedAt; soft-deleted rows are hidden from every entity query
+ * and are moved to contact_archive_tbl by the background archiver.
+ * groupName is the contact's primary group and is always one of its groups as well.
+ */
 @Entity
-@Table(name = "contact_tbl")
+@Table(name = "contact_tbl", indexes = {
+        @Index(name = "idx_contact_live_name", columnList = "deleted_at, first_name, last_name, id"),
+        @Index(name = "idx_contact_live_email_domain", columnList = "deleted_at, email_domain, first_name, last_name, id"),
+        @Index(name = "idx_contact_live_created_at", columnList = "deleted_at, created_at, id"),
+        @Index(name = "idx_contact_live_updated_at", columnList = "deleted_at, updated_at, id")
+})
+@SQLDelete(sql = "UPDATE contact_tbl SET deleted_at = CURRENT_TIMESTAMP WHERE id = ? AND version = ?")
+@SQLRestriction("deleted_at IS NULL")
 @Getter
 @Setter
 @AllArgsConstructor
@@ -28,6 +50,10 @@ public class Contact extends BaseClass {
     @Email(message = "Email Format is Wrong ")
     private String email;
 
+    // Lower-cased part of the email after '@', stored separately so domain filters can use an index.
+    @Setter(AccessLevel.NONE)
+    private String emailDomain;
+
     private String contactImage;
 
     private String address;
@@ -35,6 +61,25 @@ public class Contact extends BaseClass {
     @Enumerated(EnumType.STRING)
     private Group groupName;
 
+    private LocalDateTime deletedAt;
+
+    // Names of the user-defined groups the contact belongs to. Membership is stored in
+    // contact_group_member_tbl; this only carries it to and from the CSV import/export.
+    @Transient
+    private Set<String> groups;
+
+    @PrePersist
+    @PreUpdate
+    void deriveEmailDomain() {
+        emailDomain = emailDomainOf(email);
+    }
 
+    /**
+     * @return the lower-cased part of the email after '@', or null if there is none.
+     */
+    public static String emailDomainOf(String email) {
+        int at = email == null ? -1 : email.lastIndexOf('@');
+        return at < 0 ? null : email.substring(at + 1).toLowerCase(Locale.ROOT);
+    }
 
 }
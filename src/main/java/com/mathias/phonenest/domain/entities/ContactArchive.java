@@ -0,0 +1,51 @@
+package com.mathias.phonenest.domain.entities;
+
+import com.mathias.phonenest.domain.enums.Group;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A contact moved out of contact_tbl by the archiver. The id is the id the contact had in
+ * contact_tbl, so a restored contact keeps its identity.
+ */
+@Entity
+@Table(name = "contact_archive_tbl")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ContactArchive {
+
+    @Id
+    private Long id;
+
+    private String firstName;
+
+    private String lastName;
+
+    private String phoneNumber;
+
+    private String email;
+
+    private String emailDomain;
+
+    private String contactImage;
+
+    private String address;
+
+    @Enumerated(EnumType.STRING)
+    private Group groupName;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime deletedAt;
+
+    private Long version;
+
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,21 @@
+package com.mathias.phonenest.domain.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * A user-defined group (tag) of contacts. Names are stored upper-cased, so "Work" and "WORK"
+ * are the same group; the former fixed groups FAMILY, FRIENDS and WORK are ordinary rows.
+ */
+@Entity
+@Table(name = "contact_group_tbl")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ContactGroup extends BaseClass {
+
+    @Column(nullable = false, unique = true, length = 100)
+    private String name;
+}
@@ -0,0 +1,24 @@
+package com.mathias.phonenest.domain.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * One row per (contact, group) membership. Rows are kept when a contact is soft-deleted and
+ * moved to contact_group_member_archive_tbl when it is archived, so a restored contact gets its
+ * groups back; only live contacts are loaded into the in-memory group index.
+ */
+@Entity
+@Table(name = "contact_group_member_tbl", indexes = {
+        @Index(name = "idx_group_member_group", columnList = "group_id, contact_id")
+})
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ContactGroupMember {
+
+    @EmbeddedId
+    private ContactGroupMemberId id;
+}
@@ -0,0 +1,21 @@
+package com.mathias.phonenest.domain.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * A membership of an archived contact, moved out of contact_group_member_tbl in the same batch
+ * as the contact and moved back when the contact is restored.
+ */
+@Entity
+@Table(name = "contact_group_member_archive_tbl")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ContactGroupMemberArchive {
+
+    @EmbeddedId
+    private ContactGroupMemberId id;
+}
@@ -0,0 +1,22 @@
+package com.mathias.phonenest.domain.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.*;
+
+import java.io.Serializable;
+
+@Embeddable
+@Getter
+@Setter
+@EqualsAndHashCode
+@AllArgsConstructor
+@NoArgsConstructor
+public class ContactGroupMemberId implements Serializable {
+
+    @Column(name = "contact_id")
+    private Long contactId;
+
+    @Column(name = "group_id")
+    private Long groupId;
+}
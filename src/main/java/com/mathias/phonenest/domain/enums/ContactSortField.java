@@ -0,0 +1,23 @@
+package com.mathias.phonenest.domain.enums;
+
+import java.util.List;
+
+/**
+ * Sort orders supported by the structured contact query. The contact id is always
+ * appended as the final tie-breaker so keyset paging is stable.
+ */
+public enum ContactSortField {
+    NAME(List.of("firstName", "lastName")),
+    CREATED_AT(List.of("createdAt")),
+    UPDATED_AT(List.of("updatedAt"));
+
+    private final List<String> properties;
+
+    ContactSortField(List<String> properties) {
+        this.properties = properties;
+    }
+
+    public List<String> getProperties() {
+        return properties;
+    }
+}
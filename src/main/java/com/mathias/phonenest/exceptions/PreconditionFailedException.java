@@ -0,0 +1,7 @@
+package com.mathias.phonenest.exceptions;
+
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
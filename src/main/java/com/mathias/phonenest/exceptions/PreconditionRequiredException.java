@@ -0,0 +1,7 @@
+package com.mathias.phonenest.exceptions;
+
+public class PreconditionRequiredException extends RuntimeException {
+    public PreconditionRequiredException(String message) {
+        super(message);
+    }
+}
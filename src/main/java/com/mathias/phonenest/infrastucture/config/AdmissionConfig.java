@@ -0,0 +1,125 @@
+package com.mathias.phonenest.infrastucture.config;
+
+import com.mathias.phonenest.infrastucture.filter.AdmissionControlFilter;
+import com.mathias.phonenest.util.AdmissionLane;
+import com.mathias.phonenest.util.ContactWriteGate;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The filter is always registered and checks phonenest.admission.enabled itself: a
+ * {@code @ConditionalOnProperty} would be fixed when an AOT image is built and ignore the
+ * property at run time.
+ */
+@Slf4j
+@Configuration
+public class AdmissionConfig {
+
+    /**
+     * Lane for the cheap single-contact calls (add, update, search, ...).
+     */
+    @Bean
+    public AdmissionLane interactiveLane(
+            @Value("${phonenest.admission.interactive.max-concurrent:32}") int maxConcurrent,
+            @Value("${phonenest.admission.interactive.max-wait:100ms}") Duration maxWait,
+            @Value("${phonenest.admission.interactive.retry-after:1s}") Duration retryAfter,
+            @Value("${phonenest.admission.interactive.rate-per-second:50}") double ratePerSecond,
+            @Value("${phonenest.admission.interactive.burst:100}") int burst,
+            MeterRegistry meterRegistry) {
+        AdmissionLane lane = new AdmissionLane("interactive", maxConcurrent, maxWait, retryAfter, ratePerSecond, burst);
+        registerMetrics(lane, meterRegistry);
+        return lane;
+    }
+
+    /**
+     * Lane for the endpoints that read or write the whole address book. Its limit is kept below
+     * the connection pool size, so those connections are always left for the interactive lane.
+     */
+    @Bean
+    public AdmissionLane bulkLane(
+            @Value("${phonenest.admission.bulk.max-concurrent:4}") int maxConcurrent,
+            @Value("${phonenest.admission.bulk.max-wait:0ms}") Duration maxWait,
+            @Value("${phonenest.admission.bulk.retry-after:10s}") Duration retryAfter,
+            @Value("${phonenest.admission.bulk.rate-per-second:0.2}") double ratePerSecond,
+            @Value("${phonenest.admission.bulk.burst:5}") int burst,
+            MeterRegistry meterRegistry,
+            DataSource dataSource) {
+        AdmissionLane lane = new AdmissionLane("bulk", maxConcurrent, maxWait, retryAfter, ratePerSecond, burst);
+        registerMetrics(lane, meterRegistry);
+        warnIfPoolTooSmall(lane, dataSource);
+        return lane;
+    }
+
+    /**
+     * Closed by a snapshot restore, so no contact write runs while the tables are being loaded.
+     */
+    @Bean
+    public ContactWriteGate contactWriteGate() {
+        return new ContactWriteGate();
+    }
+
+    /**
+     * Runs before every other filter on the contact API, so shed requests cost no further work.
+     * Actuator and Swagger are not limited.
+     */
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(
+            @Value("${phonenest.admission.enabled:true}") boolean enabled,
+            AdmissionLane interactiveLane,
+            AdmissionLane bulkLane,
+            @Value("${phonenest.admission.bulk-paths}") List<String> bulkPaths,
+            @Value("${phonenest.admission.exclusive-paths:}") List<String> exclusivePaths,
+            ContactWriteGate contactWriteGate) {
+        FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(
+                new AdmissionControlFilter(enabled, interactiveLane, bulkLane, bulkPaths, exclusivePaths, contactWriteGate));
+        registration.addUrlPatterns("/api/contacts/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    private static void registerMetrics(AdmissionLane lane, MeterRegistry meterRegistry) {
+        Gauge.builder("phonenest.admission.in-flight", lane, AdmissionLane::getInFlight)
+                .description("Requests currently running in the lane")
+                .tag("lane", lane.getName())
+                .register(meterRegistry);
+        FunctionCounter.builder("phonenest.admission.admitted", lane, AdmissionLane::getAdmittedCount)
+                .description("Requests admitted into the lane")
+                .tag("lane", lane.getName())
+                .register(meterRegistry);
+        FunctionCounter.builder("phonenest.admission.rejected", lane, AdmissionLane::getRejectedBusyCount)
+                .description("Requests shed with 503 because the lane was full")
+                .tags("lane", lane.getName(), "reason", "busy")
+                .register(meterRegistry);
+        FunctionCounter.builder("phonenest.admission.rejected", lane, AdmissionLane::getRejectedRateCount)
+                .description("Requests rejected with 429 because their client was over its rate")
+                .tags("lane", lane.getName(), "reason", "rate")
+                .register(meterRegistry);
+    }
+
+    private static void warnIfPoolTooSmall(AdmissionLane lane, DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                int poolSize = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+                if (lane.getMaxConcurrent() >= poolSize) {
+                    log.warn("The bulk lane admits {} requests but the connection pool only has {} connections;"
+                            + " bulk work can still starve interactive requests", lane.getMaxConcurrent(), poolSize);
+                }
+            }
+        } catch (SQLException e) {
+            log.debug("Could not inspect the connection pool", e);
+        }
+    }
+}
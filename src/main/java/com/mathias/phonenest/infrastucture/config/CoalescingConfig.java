@@ -0,0 +1,40 @@
+package com.mathias.phonenest.infrastucture.config;
+
+import com.mathias.phonenest.payload.response.ContactReportDto;
+import com.mathias.phonenest.util.RequestCoalescer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class CoalescingConfig {
+
+    /**
+     * Shared single-flight layer for the contact read queries (list, group and search).
+     * The coalescing counters and ratio are published under phonenest.coalescing.*.
+     */
+    @Bean
+    public RequestCoalescer<String, List<ContactReportDto>> contactReadCoalescer(
+            @Value("${phonenest.coalescing.result-ttl:0ms}") Duration resultTtl,
+            MeterRegistry meterRegistry) {
+        RequestCoalescer<String, List<ContactReportDto>> coalescer = new RequestCoalescer<>(resultTtl);
+
+        FunctionCounter.builder("phonenest.coalescing.requests", coalescer, RequestCoalescer::getRequestCount)
+                .description("Contact read requests received")
+                .register(meterRegistry);
+        FunctionCounter.builder("phonenest.coalescing.executions", coalescer, RequestCoalescer::getExecutionCount)
+                .description("Contact read requests that ran a database query")
+                .register(meterRegistry);
+        Gauge.builder("phonenest.coalescing.ratio", coalescer, RequestCoalescer::getCoalescingRatio)
+                .description("Share of contact read requests answered by another in-flight or recent query")
+                .register(meterRegistry);
+
+        return coalescer;
+    }
+}
@@ -0,0 +1,27 @@
+package com.mathias.phonenest.infrastucture.config;
+
+import com.mathias.phonenest.util.GroupBitmapIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class GroupIndexConfig {
+
+    /**
+     * In-memory bitmap index of group membership, loaded from contact_group_member_tbl at startup.
+     * Its heap footprint is published as phonenest.groups.index.size.
+     */
+    @Bean
+    public GroupBitmapIndex contactGroupIndex(MeterRegistry meterRegistry) {
+        GroupBitmapIndex index = new GroupBitmapIndex();
+
+        Gauge.builder("phonenest.groups.index.size", index, GroupBitmapIndex::sizeInBytes)
+                .description("Approximate heap used by the contact group bitmaps")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        return index;
+    }
+}
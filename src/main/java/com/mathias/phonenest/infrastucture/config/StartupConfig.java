@@ -0,0 +1,26 @@
+package com.mathias.phonenest.infrastucture.config;
+
+import com.mathias.phonenest.service.ContactGroupService;
+import com.mathias.phonenest.util.AdmissionLane;
+import com.mathias.phonenest.util.ContactWriteGate;
+import com.mathias.phonenest.util.GroupBitmapIndex;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The fast-startup profile turns on spring.main.lazy-initialization, so beans such as the
+ * OpenAPI model are only built when first used. The beans here must still be ready before the
+ * first request: the admission lanes and write gate, and the group index with the service that loads it.
+ * Beans with {@code @Scheduled} methods are kept eager by Spring Boot itself.
+ */
+@Configuration
+public class StartupConfig {
+
+    // Static, because exclude filters are looked up before regular configuration classes are created.
+    @Bean
+    static LazyInitializationExcludeFilter eagerBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(AdmissionLane.class, ContactWriteGate.class,
+                GroupBitmapIndex.class, ContactGroupService.class);
+    }
+}
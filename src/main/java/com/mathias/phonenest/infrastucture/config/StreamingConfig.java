@@ -0,0 +1,39 @@
+package com.mathias.phonenest.infrastucture.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Runs the StreamingResponseBody writers of the stream/* endpoints on their own executor instead
+ * of the application-wide one, whose queue is unbounded. Each running stream holds a pooled
+ * connection, so only a few run at once, a few more wait, and the rest are answered 503.
+ * The executor is deliberately not a bean, so the application task executor is still auto-configured.
+ */
+@Configuration
+public class StreamingConfig implements WebMvcConfigurer, DisposableBean {
+
+    private final ThreadPoolTaskExecutor streamingExecutor = new ThreadPoolTaskExecutor();
+
+    public StreamingConfig(@Value("${phonenest.streaming.max-concurrent:4}") int maxConcurrent,
+                           @Value("${phonenest.streaming.queue-capacity:16}") int queueCapacity) {
+        streamingExecutor.setCorePoolSize(maxConcurrent);
+        streamingExecutor.setMaxPoolSize(maxConcurrent);
+        streamingExecutor.setQueueCapacity(queueCapacity);
+        streamingExecutor.setThreadNamePrefix("stream-");
+        streamingExecutor.initialize();
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamingExecutor);
+    }
+
+    @Override
+    public void destroy() {
+        streamingExecutor.shutdown();
+    }
+}
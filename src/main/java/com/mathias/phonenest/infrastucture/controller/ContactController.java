@@ -1,14 +1,28 @@
 package com.mathias.phonenest.infrastucture.controller;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mathias.phonenest.domain.entities.Contact;
 import com.mathias.phonenest.domain.enums.Group;
+import com.mathias.phonenest.payload.request.ContactGroupQueryRequest;
+import com.mathias.phonenest.payload.request.ContactQueryRequest;
+import com.mathias.phonenest.exceptions.InvalidFormatException;
+import com.mathias.phonenest.exceptions.PreconditionFailedException;
+import com.mathias.phonenest.exceptions.PreconditionRequiredException;
 import com.mathias.phonenest.payload.request.ContactRequest;
+import com.mathias.phonenest.payload.request.PatchContactRequest;
 import com.mathias.phonenest.payload.request.UpdateContactRequest;
+import com.mathias.phonenest.payload.response.ContactGroupDto;
+import com.mathias.phonenest.payload.response.ContactPageResponse;
 import com.mathias.phonenest.payload.response.ContactReportDto;
 import com.mathias.phonenest.payload.response.ContactResponse;
+import com.mathias.phonenest.payload.response.SnapshotManifest;
+import com.mathias.phonenest.service.ContactArchiveService;
+import com.mathias.phonenest.service.ContactGroupService;
 import com.mathias.phonenest.service.ContactService;
+import com.mathias.phonenest.service.ContactSnapshotService;
 import com.mathias.phonenest.util.CsvHelper;
+import com.mathias.phonenest.util.JsonStreamWriter;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -20,10 +34,13 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/contacts")
@@ -31,6 +48,10 @@ import java.util.List;
 public class ContactController {
 
     private final ContactService contactService;
+    private final ContactArchiveService contactArchiveService;
+    private final ContactGroupService contactGroupService;
+    private final ContactSnapshotService contactSnapshotService;
+    private final ObjectMapper objectMapper;
 
 
     /**
@@ -67,6 +88,32 @@ public class ContactController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Partially update a contact.
+     * URL: PATCH /api/contacts/{id}
+     * Only the fields present in the body are changed. The If-Match header must carry the version the
+     * client last read (the version field of ContactReportDto); the update is a single conditional
+     * statement that fails with 412 (Precondition Failed) if the contact has changed since. A request
+     * without If-Match is answered 428 (Precondition Required), one with a weak ETag (W/"3") 412.
+     *
+     * @param id the ID of the contact to update.
+     * @param ifMatch the contact version the client expects, e.g. "3".
+     * @param patchRequest the fields to change.
+     * @return a ResponseEntity containing the ContactResponse, the new version as ETag and an HTTP OK (200) status.
+     */
+    @PatchMapping("/{id}")
+    public ResponseEntity<ContactResponse> patchContact(@PathVariable Long id,
+                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                        @RequestBody PatchContactRequest patchRequest) {
+        long expectedVersion = parseVersion(ifMatch);
+        // Apply the partial update using the service layer.
+        ContactResponse response = contactService.patchContact(id, expectedVersion, patchRequest);
+        // A successful update always moves the contact to the next version.
+        return ResponseEntity.ok()
+                .eTag(String.valueOf(expectedVersion + 1))
+                .body(response);
+    }
+
     /**
      * Delete a single contact by its ID.
      * URL: DELETE /api/contacts/delete-contact?contactId={contactId}
@@ -84,6 +131,23 @@ public class ContactController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Restore a deleted contact.
+     * URL: POST /api/contacts/restore-contact?contactId={contactId}
+     * Deleting a contact only marks it as deleted; the background archiver later moves it to the
+     * archive table. This brings the contact back from either place under its original ID.
+     *
+     * @param contactId the ID of the contact to restore.
+     * @return a ResponseEntity containing a ContactResponse and an HTTP OK (200) status.
+     */
+    @PostMapping("/restore-contact")
+    public ResponseEntity<ContactResponse> restoreContact(@RequestParam Long contactId) {
+        // Restore the contact using the archive service.
+        ContactResponse response = contactArchiveService.restoreContact(contactId);
+        // Return the result with HTTP status 200 (OK).
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Search for a contact using a query string.
      * URL: GET /api/contacts/search?query={query}
@@ -132,6 +196,125 @@ public class ContactController {
         return ResponseEntity.ok(contact);
     }
 
+    /**
+     * Stream all contacts.
+     * URL: GET /api/contacts/stream/all
+     * Same contacts and order as get-all-contacts, but written to the response as they are read from
+     * the database, so the first contact arrives right away and memory use does not grow with the
+     * address book. Send "Accept: application/x-ndjson" for one contact per line; otherwise the
+     * response is a JSON array.
+     *
+     * @param accept the Accept header, used to choose between NDJSON and a JSON array.
+     * @return a ResponseEntity with the streamed body and an HTTP OK (200) status.
+     */
+    @GetMapping("/stream/all")
+    public ResponseEntity<StreamingResponseBody> streamAllContacts(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return streaming(accept, contactService::streamAllContacts);
+    }
+
+    /**
+     * Stream the contacts of a group.
+     * URL: GET /api/contacts/stream/group?groupName={groupName}
+     * Streaming variant of get-contact-by-group; see stream/all for the response format.
+     *
+     * @param groupName the group to filter contacts by.
+     * @param accept the Accept header, used to choose between NDJSON and a JSON array.
+     * @return a ResponseEntity with the streamed body and an HTTP OK (200) status.
+     */
+    @GetMapping("/stream/group")
+    public ResponseEntity<StreamingResponseBody> streamContactsByGroup(
+            @RequestParam Group groupName,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return streaming(accept, consumer -> contactService.streamContactsByGroup(groupName, consumer));
+    }
+
+    /**
+     * Stream the contacts matching a search.
+     * URL: GET /api/contacts/stream/search?query={query}
+     * Streaming variant of search; see stream/all for the response format. Unlike search, no match
+     * gives an empty result rather than 404, because the status is sent before the first row is read.
+     *
+     * @param query the search term to be used.
+     * @param accept the Accept header, used to choose between NDJSON and a JSON array.
+     * @return a ResponseEntity with the streamed body and an HTTP OK (200) status.
+     */
+    @GetMapping("/stream/search")
+    public ResponseEntity<StreamingResponseBody> streamSearchContacts(
+            @RequestParam String query,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return streaming(accept, consumer -> contactService.streamSearchContacts(query, consumer));
+    }
+
+    /**
+     * Query contacts with a combination of filters, a sort order and keyset paging.
+     * URL: POST /api/contacts/query
+     * Supported filters are a set of groups, a first-name prefix, an email domain, createdAt/updatedAt
+     * ranges and whether the contact has an image. The response carries a nextCursor that is passed
+     * back as cursor to fetch the following page.
+     *
+     * @param queryRequest the filters, sort order, page size and optional cursor.
+     * @return a ResponseEntity containing a ContactPageResponse and an HTTP OK (200) status.
+     */
+    @PostMapping("/query")
+    public ResponseEntity<ContactPageResponse> queryContacts(@RequestBody ContactQueryRequest queryRequest) {
+        // Run the structured query using the service layer.
+        ContactPageResponse page = contactService.queryContacts(queryRequest);
+        // Return the page of contacts with HTTP status 200 (OK).
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * List all groups.
+     * URL: GET /api/contacts/groups
+     * Returns every group with the number of live contacts in it, answered from the in-memory group index.
+     *
+     * @return a ResponseEntity containing a list of ContactGroupDto objects and an HTTP OK (200) status.
+     */
+    @GetMapping("/groups")
+    public ResponseEntity<List<ContactGroupDto>> getGroups() {
+        // Retrieve the groups from the service layer.
+        List<ContactGroupDto> groups = contactGroupService.getGroups();
+        // Return the groups with HTTP status 200 (OK).
+        return ResponseEntity.ok(groups);
+    }
+
+    /**
+     * Replace the groups of a contact.
+     * URL: PUT /api/contacts/{id}/groups
+     * The body lists every group the contact should belong to; groups that do not exist yet are created.
+     * If the contact's primary groupName is not in the list, it is cleared.
+     *
+     * @param id the ID of the contact.
+     * @param groups the names of the groups, e.g. ["WORK", "Golf Club"].
+     * @return a ResponseEntity containing the ContactResponse and an HTTP OK (200) status.
+     */
+    @PutMapping("/{id}/groups")
+    public ResponseEntity<ContactResponse> setContactGroups(@PathVariable Long id, @RequestBody Set<String> groups) {
+        // Replace the memberships using the service layer.
+        ContactResponse response = contactGroupService.setContactGroups(id, groups);
+        // Return the result with HTTP status 200 (OK).
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Query contacts by group membership.
+     * URL: POST /api/contacts/groups/query
+     * Combines allOf, anyOf and noneOf group lists, e.g. "in WORK and not in FAMILY", using bitmap
+     * operations on the in-memory group index; the matching page is then fetched by id in one query.
+     * Results are in id order and carry a nextCursor for the following page.
+     *
+     * @param queryRequest the group conditions, page size and optional cursor.
+     * @return a ResponseEntity containing a ContactPageResponse and an HTTP OK (200) status.
+     */
+    @PostMapping("/groups/query")
+    public ResponseEntity<ContactPageResponse> queryContactsByGroups(@RequestBody ContactGroupQueryRequest queryRequest) {
+        // Run the membership query using the service layer.
+        ContactPageResponse page = contactService.queryContactsByGroups(queryRequest);
+        // Return the page of contacts with HTTP status 200 (OK).
+        return ResponseEntity.ok(page);
+    }
+
     /**
      * Bulk delete contacts.
      * URL: DELETE /api/contacts/bulk-delete
@@ -154,6 +337,7 @@ public class ContactController {
      * Expects a multipart file with CSV data.
      * Sample CSV template header:
      * firstName,lastName,email,phoneNumber,contactImage,address,groupName
+     * groupName may list several groups separated by ';', e.g. "work;golf club".
      *
      * @param file the uploaded CSV file.
      * @return a ResponseEntity with a success or error message.
@@ -202,4 +386,68 @@ public class ContactController {
                 .body(new InputStreamResource(in));
     }
 
+    /**
+     * Take a snapshot of the whole address book.
+     * Endpoint: POST /api/contacts/snapshot
+     * The contact table is split into ID ranges that are read in parallel and written as checksummed,
+     * gzip-compressed CSV files plus a manifest under the configured snapshot directory.
+     *
+     * @return a ResponseEntity containing the SnapshotManifest and an HTTP CREATED (201) status.
+     */
+    @PostMapping("/snapshot")
+    public ResponseEntity<SnapshotManifest> createSnapshot() {
+        // Write the snapshot using the service layer.
+        SnapshotManifest manifest = contactSnapshotService.createSnapshot();
+        // Return the manifest with HTTP status 201 (Created).
+        return new ResponseEntity<>(manifest, HttpStatus.CREATED);
+    }
+
+    /**
+     * Restore a snapshot into an empty contact table.
+     * Endpoint: POST /api/contacts/snapshot/restore?name={name}
+     * All partition checksums are verified first; the partitions are then loaded in parallel with
+     * batched inserts and the secondary indexes are rebuilt once at the end.
+     *
+     * @param name the snapshot name returned when it was created.
+     * @return a ResponseEntity containing the restored SnapshotManifest and an HTTP OK (200) status.
+     */
+    @PostMapping("/snapshot/restore")
+    public ResponseEntity<SnapshotManifest> restoreSnapshot(@RequestParam String name) {
+        // Restore the snapshot using the service layer.
+        SnapshotManifest manifest = contactSnapshotService.restoreSnapshot(name);
+        // Return the manifest with HTTP status 200 (OK).
+        return ResponseEntity.ok(manifest);
+    }
+
+    // The body runs on the MVC async executor, so the request thread is released while it streams.
+    private ResponseEntity<StreamingResponseBody> streaming(String accept, Consumer<Consumer<ContactReportDto>> query) {
+        boolean ndjson = accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE);
+        StreamingResponseBody body = out -> {
+            JsonStreamWriter writer = new JsonStreamWriter(objectMapper, out, ndjson);
+            query.accept(writer::write);
+            writer.finish();
+        };
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    // Accepts 3, "3" and W/"3".
+    private static long parseVersion(String ifMatch) {
+        if (ifMatch == null) {
+            throw new PreconditionRequiredException("If-Match with the contact version is required, e.g. \"3\".");
+        }
+        String value = ifMatch.trim();
+        // If-Match compares strongly, so a weak ETag never matches (RFC 9110, section 13.1.1).
+        if (value.startsWith("W/")) {
+            throw new PreconditionFailedException("If-Match must carry the strong ETag of the contact, e.g. \"3\".");
+        }
+        value = value.replace("\"", "");
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidFormatException("If-Match must carry the contact version, e.g. \"3\".");
+        }
+    }
+
 }
@@ -0,0 +1,191 @@
+package com.mathias.phonenest.infrastucture.filter;
+
+import com.mathias.phonenest.util.AdmissionLane;
+import com.mathias.phonenest.util.ContactWriteGate;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admits each contact API request into the interactive or the bulk lane before it reaches the
+ * controller. Requests over their client's rate are answered 429 and requests that find their lane
+ * full are answered 503, both at once and with a Retry-After header, so they never queue for a
+ * request thread or a pooled connection. Streaming requests keep their slot until the response has
+ * been written completely. Writes also pass the {@link ContactWriteGate} and are answered 503 while
+ * a snapshot is being restored, whether admission control is enabled or not.
+ */
+@Slf4j
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final String RELEASE_ATTRIBUTE = AdmissionControlFilter.class.getName() + ".release";
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final boolean enabled;
+    private final AdmissionLane interactiveLane;
+    private final AdmissionLane bulkLane;
+    private final List<String> bulkPaths;
+    private final List<String> exclusivePaths;
+    private final ContactWriteGate writeGate;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    /**
+     * @param enabled         false skips the lanes and rate limits.
+     * @param interactiveLane lane for every request not matched by bulkPaths.
+     * @param bulkLane        lane for the heavy endpoints.
+     * @param bulkPaths       Ant-style path patterns of the heavy endpoints.
+     * @param exclusivePaths  bulk patterns whose requests take the whole bulk lane, e.g. because they
+     *                        use several connections at once. They do not pass the write gate; a
+     *                        restore closes it itself.
+     * @param writeGate       closed while a snapshot is being restored.
+     */
+    public AdmissionControlFilter(boolean enabled, AdmissionLane interactiveLane, AdmissionLane bulkLane,
+                                  List<String> bulkPaths, List<String> exclusivePaths, ContactWriteGate writeGate) {
+        this.enabled = enabled;
+        this.interactiveLane = interactiveLane;
+        this.bulkLane = bulkLane;
+        this.bulkPaths = List.copyOf(bulkPaths);
+        this.exclusivePaths = List.copyOf(exclusivePaths);
+        this.writeGate = writeGate;
+    }
+
+    // The async dispatch that ends a streaming response is where its slot is given back.
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (isAsyncDispatch(request)) {
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                releaseUnlessAsync(request);
+            }
+            return;
+        }
+
+        // The path the dispatcher maps, so ;params, encoded characters and doubled slashes match the lanes too.
+        String path = UrlPathHelper.defaultInstance.getLookupPathForRequest(request);
+        boolean write = !READ_METHODS.contains(request.getMethod()) && !matches(exclusivePaths, path);
+        if (write && !writeGate.tryEnterWrite()) {
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, Math.max(1, bulkLane.getRetryAfter().toSeconds()),
+                    "Contacts are being restored. Please try again later.");
+            return;
+        }
+        try {
+            if (enabled) {
+                admit(request, response, filterChain, path);
+            } else {
+                filterChain.doFilter(request, response);
+            }
+        } finally {
+            if (write) {
+                writeGate.exitWrite();
+            }
+        }
+    }
+
+    private void admit(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain, String path)
+            throws ServletException, IOException {
+        AdmissionLane lane = matches(bulkPaths, path) ? bulkLane : interactiveLane;
+        int slots = lane == bulkLane && matches(exclusivePaths, path) ? lane.getMaxConcurrent() : 1;
+
+        String client = request.getRemoteAddr();
+        long rateWaitNanos = lane.tryConsumeRate(client);
+        if (rateWaitNanos > 0) {
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, TimeUnit.NANOSECONDS.toSeconds(rateWaitNanos) + 1,
+                    "Too many requests. Please slow down and try again later.");
+            return;
+        }
+        if (!lane.tryAcquire(slots)) {
+            // A shed request did no work, so it does not count against its client's rate.
+            lane.refundRate(client);
+            log.debug("Shedding {} {}: the {} lane is full", request.getMethod(), path, lane.getName());
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, Math.max(1, lane.getRetryAfter().toSeconds()),
+                    "The server is busy. Please try again later.");
+            return;
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                lane.release(slots);
+            }
+        };
+        request.setAttribute(RELEASE_ATTRIBUTE, release);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // Also covers timeouts and clients that go away, which may never be dispatched again.
+                request.getAsyncContext().addListener(new ReleasingAsyncListener(release));
+            }
+            releaseUnlessAsync(request);
+        }
+    }
+
+    private boolean matches(List<String> patterns, String path) {
+        for (String pattern : patterns) {
+            if (pathMatcher.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void releaseUnlessAsync(HttpServletRequest request) {
+        if (!request.isAsyncStarted() && request.getAttribute(RELEASE_ATTRIBUTE) instanceof Runnable release) {
+            release.run();
+        }
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds, String message)
+            throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(message);
+    }
+
+    private record ReleasingAsyncListener(Runnable release) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Started again, e.g. by a further async dispatch; the slot is still held.
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.mathias.phonenest.payload.request;
+
+import lombok.*;
+
+import java.util.Set;
+
+/**
+ * Selects contacts by membership of user-defined groups, e.g. allOf = [WORK], noneOf = [FAMILY].
+ * Every supplied condition must hold. Results come in id order; pass the nextCursor of the
+ * previous page as cursor to fetch the following page.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ContactGroupQueryRequest {
+
+    // Contacts in every one of these groups.
+    private Set<String> allOf;
+
+    // Contacts in at least one of these groups.
+    private Set<String> anyOf;
+
+    // Contacts in none of these groups.
+    private Set<String> noneOf;
+
+    private Integer limit;
+
+    private String cursor;
+}
@@ -0,0 +1,47 @@
+package com.mathias.phonenest.payload.request;
+
+import com.mathias.phonenest.domain.enums.ContactSortField;
+import lombok.*;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Structured contact query. Every filter is optional and all supplied filters must match.
+ * Pass the nextCursor of the previous page as cursor to fetch the following page.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ContactQueryRequest {
+
+    // Contacts in any of these groups, by name. Case does not matter; unknown groups have no members.
+    private Set<String> groups;
+
+    // Start of the first name.
+    private String namePrefix;
+
+    // Part of the email after '@', e.g. "example.com".
+    private String emailDomain;
+
+    private LocalDateTime createdFrom;
+
+    private LocalDateTime createdTo;
+
+    private LocalDateTime updatedFrom;
+
+    private LocalDateTime updatedTo;
+
+    private Boolean hasImage;
+
+    private ContactSortField sortBy;
+
+    private Sort.Direction direction;
+
+    private Integer limit;
+
+    private String cursor;
+}
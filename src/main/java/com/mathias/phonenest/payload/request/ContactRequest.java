@@ -6,6 +6,8 @@ import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
 
+import java.util.Set;
+
 @Getter
 @Setter
 @AllArgsConstructor
@@ -32,4 +34,7 @@ public class ContactRequest {
 
     @Enumerated(EnumType.STRING)
     private Group groupName;
+
+    // Any further user-defined groups; created on first use. groupName is always added as well.
+    private Set<String> groups;
 }
@@ -0,0 +1,31 @@
+package com.mathias.phonenest.payload.request;
+
+import com.mathias.phonenest.domain.enums.Group;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.*;
+
+/**
+ * Partial update of a contact. Only the fields present (non-null) are changed;
+ * send an empty string to clear contactImage or address.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PatchContactRequest {
+
+    private String firstName;
+
+    private String lastName;
+
+    private String phoneNumber;
+
+    private String contactImage;
+
+    private String address;
+
+    @Enumerated(EnumType.STRING)
+    private Group groupName;
+}
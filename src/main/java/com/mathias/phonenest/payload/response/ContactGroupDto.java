@@ -0,0 +1,16 @@
+package com.mathias.phonenest.payload.response;
+
+import lombok.*;
+
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ContactGroupDto {
+
+    private String name;
+
+    // Live contacts in the group.
+    private long contactCount;
+}
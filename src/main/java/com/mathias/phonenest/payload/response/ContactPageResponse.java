@@ -0,0 +1,14 @@
+package com.mathias.phonenest.payload.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ContactPageResponse {
+    private List<ContactReportDto> contacts;
+    // Null when this is the last page.
+    private String nextCursor;
+}
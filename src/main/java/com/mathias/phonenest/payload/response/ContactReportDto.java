@@ -8,6 +8,8 @@ import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
 
+import java.util.List;
+
 @Setter
 @Getter
 @AllArgsConstructor
@@ -15,6 +17,11 @@ import lombok.*;
 @Builder
 public class ContactReportDto {
 
+    private Long id;
+
+    // Send back as If-Match to PATCH /api/contacts/{id}.
+    private Long version;
+
     private String firstName;
 
     private String lastName;
@@ -29,4 +36,7 @@ public class ContactReportDto {
 
     @Enumerated(EnumType.STRING)
     private Group groupName;
+
+    // Every group the contact belongs to, including groupName.
+    private List<String> groups;
 }
@@ -0,0 +1,42 @@
+package com.mathias.phonenest.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Describes a contact_tbl snapshot: one gzip CSV file per id range, each with its SHA-256 checksum,
+ * plus one file each for the groups and the group memberships of the contacts. Stored as
+ * manifest.json next to the data files and returned by the snapshot endpoints.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SnapshotManifest {
+    private String name;
+    private LocalDateTime createdAt;
+    private List<String> columns;
+    private long rowCount;
+    private long durationMillis;
+    private List<Partition> partitions;
+    // Whole-table files; their fromId and toId are not used. Null in snapshots taken before groups existed.
+    private Partition groups;
+    private Partition memberships;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Partition {
+        private String file;
+        private long fromId;
+        private long toId;
+        private long rowCount;
+        private String sha256;
+    }
+}
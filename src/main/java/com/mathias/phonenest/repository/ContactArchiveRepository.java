@@ -0,0 +1,75 @@
+package com.mathias.phonenest.repository;
+
+import com.mathias.phonenest.domain.entities.ContactArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ContactArchiveRepository extends JpaRepository<ContactArchive, Long> {
+
+    /**
+     * Copies the given rows of contact_tbl into the archive table in a single statement.
+     * Soft-deleted rows are included, so this bypasses the entity-level deleted_at filter.
+     *
+     * @param ids        the ids of the contacts to copy
+     * @param archivedAt the archive timestamp to record on every copied row
+     * @return the number of rows copied
+     */
+    @Modifying
+    @Query(value = "INSERT INTO contact_archive_tbl (id, first_name, last_name, phone_number, email, email_domain, "
+            + "contact_image, address, group_name, created_at, updated_at, deleted_at, version, archived_at) "
+            + "SELECT id, first_name, last_name, phone_number, email, email_domain, "
+            + "contact_image, address, group_name, created_at, updated_at, deleted_at, version, :archivedAt "
+            + "FROM contact_tbl WHERE id IN (:ids)", nativeQuery = true)
+    int copyFromContacts(@Param("ids") List<Long> ids, @Param("archivedAt") LocalDateTime archivedAt);
+
+    /**
+     * Copies an archived row back into contact_tbl under its original id, as a live (not deleted) contact.
+     *
+     * @param id the id of the archived contact
+     * @return the number of rows copied
+     */
+    @Modifying
+    @Query(value = "INSERT INTO contact_tbl (id, first_name, last_name, phone_number, email, email_domain, "
+            + "contact_image, address, group_name, created_at, updated_at, version) "
+            + "SELECT id, first_name, last_name, phone_number, email, email_domain, "
+            + "contact_image, address, group_name, created_at, updated_at, version "
+            + "FROM contact_archive_tbl WHERE id = :id", nativeQuery = true)
+    int copyBackToContacts(@Param("id") Long id);
+
+    /**
+     * Copies the group memberships of the given contacts into contact_group_member_archive_tbl.
+     *
+     * @param ids the ids of the contacts being archived
+     * @return the number of memberships copied
+     */
+    @Modifying
+    @Query(value = "INSERT INTO contact_group_member_archive_tbl (contact_id, group_id) "
+            + "SELECT contact_id, group_id FROM contact_group_member_tbl WHERE contact_id IN (:ids)", nativeQuery = true)
+    int copyMembershipsFromContacts(@Param("ids") List<Long> ids);
+
+    /**
+     * Copies the archived group memberships of a contact back into contact_group_member_tbl.
+     *
+     * @param id the id of the archived contact
+     * @return the number of memberships copied
+     */
+    @Modifying
+    @Query(value = "INSERT INTO contact_group_member_tbl (contact_id, group_id) "
+            + "SELECT contact_id, group_id FROM contact_group_member_archive_tbl WHERE contact_id = :id", nativeQuery = true)
+    int copyMembershipsBackToContacts(@Param("id") Long id);
+
+    /**
+     * Removes the archived group memberships of a contact.
+     *
+     * @param id the id of the archived contact
+     * @return the number of memberships removed
+     */
+    @Modifying
+    @Query(value = "DELETE FROM contact_group_member_archive_tbl WHERE contact_id = :id", nativeQuery = true)
+    int deleteMembershipsById(@Param("id") Long id);
+}
@@ -0,0 +1,26 @@
+package com.mathias.phonenest.repository;
+
+import com.mathias.phonenest.domain.entities.Contact;
+
+import java.util.List;
+import java.util.function.LongConsumer;
+
+public interface ContactBulkRepository {
+
+    /**
+     * Inserts new contacts with JDBC batches instead of one INSERT per entity. IDENTITY ids keep
+     * Hibernate from batching, so this bypasses the persistence context; the generated ids are
+     * read back from each batch and set on the given entities.
+     *
+     * @param contacts the contacts to insert
+     * @return the number of rows inserted
+     */
+    int insertAll(List<Contact> contacts);
+
+    /**
+     * Streams the ids of all live contacts without loading the rows.
+     *
+     * @param consumer receives every live contact id
+     */
+    void forEachLiveContactId(LongConsumer consumer);
+}
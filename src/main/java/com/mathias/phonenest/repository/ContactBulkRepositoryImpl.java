@@ -0,0 +1,110 @@
+package com.mathias.phonenest.repository;
+
+import com.mathias.phonenest.domain.entities.Contact;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.LongConsumer;
+
+@RequiredArgsConstructor
+class ContactBulkRepositoryImpl implements ContactBulkRepository {
+
+    // Rows per JDBC batch; with rewriteBatchedStatements MySQL receives each batch as one multi-row INSERT.
+    private static final int BATCH_SIZE = 1000;
+    // Rows per round trip while streaming; with useCursorFetch MySQL reads through a server-side cursor.
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String INSERT = "INSERT INTO contact_tbl (first_name, last_name, phone_number, email, "
+            + "email_domain, contact_image, address, group_name, created_at, updated_at, version) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private static final String SELECT_LIVE_IDS = "SELECT id FROM contact_tbl WHERE deleted_at IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Validator validator;
+
+    @Override
+    @Transactional
+    public int insertAll(List<Contact> contacts) {
+        validate(contacts);
+        // What @CreationTimestamp, @UpdateTimestamp and @PrePersist would have filled in.
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+                for (int from = 0; from < contacts.size(); from += BATCH_SIZE) {
+                    List<Contact> batch = contacts.subList(from, Math.min(from + BATCH_SIZE, contacts.size()));
+                    for (Contact contact : batch) {
+                        statement.setString(1, contact.getFirstName());
+                        statement.setString(2, contact.getLastName());
+                        statement.setString(3, contact.getPhoneNumber());
+                        statement.setString(4, contact.getEmail());
+                        statement.setString(5, Contact.emailDomainOf(contact.getEmail()));
+                        statement.setString(6, contact.getContactImage());
+                        statement.setString(7, contact.getAddress());
+                        statement.setString(8, contact.getGroupName() == null ? null : contact.getGroupName().name());
+                        statement.setTimestamp(9, now);
+                        statement.setTimestamp(10, now);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+
+                    // The keys come back in insert order, one per row of the batch.
+                    try (ResultSet keys = statement.getGeneratedKeys()) {
+                        for (Contact contact : batch) {
+                            if (!keys.next()) {
+                                throw new DataRetrievalFailureException("Missing generated id for an inserted contact");
+                            }
+                            contact.setId(keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+        return contacts.size();
+    }
+
+    /**
+     * JDBC skips the Bean Validation that Hibernate runs before an insert, so the same constraints
+     * are checked here, for all rows before the first one is written.
+     */
+    private void validate(List<Contact> contacts) {
+        Set<ConstraintViolation<Contact>> violations = new LinkedHashSet<>();
+        StringJoiner message = new StringJoiner("; ");
+        for (int row = 0; row < contacts.size(); row++) {
+            for (ConstraintViolation<Contact> violation : validator.validate(contacts.get(row))) {
+                violations.add(violation);
+                message.add("Row " + (row + 1) + ": " + violation.getMessage().trim());
+            }
+        }
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(message.toString(), violations);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachLiveContactId(LongConsumer consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_LIVE_IDS);
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> consumer.accept(resultSet.getLong(1)));
+    }
+}
@@ -0,0 +1,33 @@
+package com.mathias.phonenest.repository;
+
+import com.mathias.phonenest.domain.entities.ContactGroupMemberId;
+
+import java.util.Collection;
+import java.util.function.BiConsumer;
+
+public interface ContactGroupMemberBulkRepository {
+
+    /**
+     * Inserts memberships with JDBC batches instead of one INSERT per row.
+     *
+     * @param memberships the (contact, group) pairs to insert
+     * @return the number of rows inserted
+     */
+    int insertAll(Collection<ContactGroupMemberId> memberships);
+
+    /**
+     * Inserts the memberships that do not exist yet, with JDBC batches. The check is made in the
+     * database within the caller's transaction, so the caller does not need to read them first.
+     *
+     * @param memberships the (contact, group) pairs that must exist
+     */
+    void insertMissing(Collection<ContactGroupMemberId> memberships);
+
+    /**
+     * Streams the memberships of all live contacts without loading them into the persistence
+     * context; used to build the in-memory group index.
+     *
+     * @param consumer receives the contact id and the group id of every membership
+     */
+    void forEachLiveMembership(BiConsumer<Long, Long> consumer);
+}
@@ -0,0 +1,60 @@
+package com.mathias.phonenest.repository;
+
+import com.mathias.phonenest.domain.entities.ContactGroupMemberId;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.function.BiConsumer;
+
+@RequiredArgsConstructor
+class ContactGroupMemberBulkRepositoryImpl implements ContactGroupMemberBulkRepository {
+
+    private static final int BATCH_SIZE = 1000;
+    // Rows per round trip while streaming; with useCursorFetch MySQL reads through a server-side cursor.
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String INSERT = "INSERT INTO contact_group_member_tbl (contact_id, group_id) VALUES (?, ?)";
+    private static final String INSERT_MISSING = "INSERT INTO contact_group_member_tbl (contact_id, group_id) "
+            + "SELECT ?, ? FROM DUAL WHERE NOT EXISTS "
+            + "(SELECT 1 FROM contact_group_member_tbl WHERE contact_id = ? AND group_id = ?)";
+
+    private static final String SELECT_LIVE = "SELECT m.contact_id, m.group_id FROM contact_group_member_tbl m "
+            + "JOIN contact_tbl c ON c.id = m.contact_id WHERE c.deleted_at IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional
+    public int insertAll(Collection<ContactGroupMemberId> memberships) {
+        jdbcTemplate.batchUpdate(INSERT, memberships, BATCH_SIZE, (statement, membership) -> {
+            statement.setLong(1, membership.getContactId());
+            statement.setLong(2, membership.getGroupId());
+        });
+        return memberships.size();
+    }
+
+    @Override
+    @Transactional
+    public void insertMissing(Collection<ContactGroupMemberId> memberships) {
+        jdbcTemplate.batchUpdate(INSERT_MISSING, memberships, BATCH_SIZE, (statement, membership) -> {
+            statement.setLong(1, membership.getContactId());
+            statement.setLong(2, membership.getGroupId());
+            statement.setLong(3, membership.getContactId());
+            statement.setLong(4, membership.getGroupId());
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachLiveMembership(BiConsumer<Long, Long> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_LIVE);
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> consumer.accept(resultSet.getLong(1), resultSet.getLong(2)));
+    }
+}
@@ -0,0 +1,54 @@
+package com.mathias.phonenest.repository;
+
+import com.mathias.phonenest.domain.entities.ContactGroupMember;
+import com.mathias.phonenest.domain.entities.ContactGroupMemberId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ContactGroupMemberRepository extends JpaRepository<ContactGroupMember, ContactGroupMemberId>,
+        ContactGroupMemberBulkRepository {
+
+    /**
+     * Retrieves the ids of all groups a contact belongs to, whether the contact is live or deleted.
+     *
+     * @param contactId the id of the contact
+     * @return the group ids
+     */
+    @Query("SELECT m.id.groupId FROM ContactGroupMember m WHERE m.id.contactId = :contactId")
+    List<Long> findGroupIdsByContactId(@Param("contactId") Long contactId);
+
+    /**
+     * Retrieves the group ids of several contacts in one statement.
+     *
+     * @param contactIds the ids of the contacts
+     * @return the memberships of the given contacts
+     */
+    @Query("SELECT m FROM ContactGroupMember m WHERE m.id.contactId IN :contactIds")
+    List<ContactGroupMember> findAllByContactIdIn(@Param("contactIds") Collection<Long> contactIds);
+
+    /**
+     * Removes a contact from the given groups in a single DELETE statement.
+     *
+     * @param contactId the id of the contact
+     * @param groupIds  the groups to leave
+     * @return the number of memberships removed
+     */
+    @Modifying
+    @Query("DELETE FROM ContactGroupMember m WHERE m.id.contactId = :contactId AND m.id.groupId IN :groupIds")
+    int deleteByContactIdAndGroupIdIn(@Param("contactId") Long contactId, @Param("groupIds") Collection<Long> groupIds);
+
+    /**
+     * Removes every membership of the given contacts in a single DELETE statement.
+     *
+     * @param contactIds the ids of the contacts
+     * @return the number of memberships removed
+     */
+    @Modifying
+    @Query("DELETE FROM ContactGroupMember m WHERE m.id.contactId IN :contactIds")
+    int deleteByContactIdIn(@Param("contactIds") Collection<Long> contactIds);
+}
@@ -0,0 +1,47 @@
+package com.mathias.phonenest.repository;
+
+import com.mathias.phonenest.domain.entities.ContactGroup;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface ContactGroupRepository extends JpaRepository<ContactGroup, Long> {
+
+    /**
+     * Retrieves a group by its normalised (upper-cased) name.
+     *
+     * @param name the group name
+     * @return an Optional containing the ContactGroup if it exists; otherwise, an empty Optional
+     */
+    Optional<ContactGroup> findByName(String name);
+
+    /**
+     * Retrieves a group with a shared lock. Unlike a plain read, a locking read also sees a group
+     * that another transaction committed after the current one started.
+     *
+     * @param name the group name
+     * @return an Optional containing the ContactGroup if it exists; otherwise, an empty Optional
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT g FROM ContactGroup g WHERE g.name = :name")
+    Optional<ContactGroup> findLockedByName(@Param("name") String name);
+
+    /**
+     * Creates a group unless one with the name exists. If another transaction is inserting the same
+     * name, this waits for it and then does nothing, instead of failing the current transaction.
+     *
+     * @param name the normalised group name
+     * @param now  the creation timestamp
+     * @return 1 if the group was created, 0 if it already existed
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO contact_group_tbl (name, created_at, updated_at, version) "
+            + "VALUES (:name, :now, :now, 0)", nativeQuery = true)
+    int insertIfMissing(@Param("name") String name, @Param("now") LocalDateTime now);
+}
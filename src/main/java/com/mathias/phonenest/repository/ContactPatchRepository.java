@@ -0,0 +1,18 @@
+package com.mathias.phonenest.repository;
+
+import com.mathias.phonenest.payload.request.PatchContactRequest;
+
+public interface ContactPatchRepository {
+
+    /**
+     * Applies the non-null fields of the patch to a live contact in a single conditional UPDATE,
+     * without loading it first. The row is only changed if its version still equals expectedVersion,
+     * in which case the version is incremented and updatedAt refreshed.
+     *
+     * @param id              the id of the contact to update
+     * @param expectedVersion the version the client last saw
+     * @param patch           the fields to change
+     * @return 1 if the contact was updated; 0 if it does not exist, is deleted or has another version
+     */
+    int patchIfVersionMatches(Long id, long expectedVersion, PatchContactRequest patch);
+}
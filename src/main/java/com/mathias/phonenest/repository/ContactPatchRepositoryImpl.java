@@ -0,0 +1,56 @@
+package com.mathias.phonenest.repository;
+
+import com.mathias.phonenest.domain.entities.Contact;
+import com.mathias.phonenest.payload.request.PatchContactRequest;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+class ContactPatchRepositoryImpl implements ContactPatchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int patchIfVersionMatches(Long id, long expectedVersion, PatchContactRequest patch) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Contact> update = cb.createCriteriaUpdate(Contact.class);
+        Root<Contact> root = update.from(Contact.class);
+
+        if (patch.getFirstName() != null) {
+            update.set(root.get("firstName"), patch.getFirstName());
+        }
+        if (patch.getLastName() != null) {
+            update.set(root.get("lastName"), patch.getLastName());
+        }
+        if (patch.getPhoneNumber() != null) {
+            update.set(root.get("phoneNumber"), patch.getPhoneNumber());
+        }
+        if (patch.getContactImage() != null) {
+            update.set(root.get("contactImage"), patch.getContactImage().isEmpty() ? null : patch.getContactImage());
+        }
+        if (patch.getAddress() != null) {
+            update.set(root.get("address"), patch.getAddress().isEmpty() ? null : patch.getAddress());
+        }
+        if (patch.getGroupName() != null) {
+            update.set(root.get("groupName"), patch.getGroupName());
+        }
+
+        // Bulk updates bypass @Version and @UpdateTimestamp, so maintain both here.
+        update.set(root.<Long>get("version"), cb.sum(root.<Long>get("version"), 1L));
+        update.set(root.get("updatedAt"), LocalDateTime.now());
+
+        // Soft-deleted rows are excluded by the entity's @SQLRestriction.
+        update.where(
+                cb.equal(root.get("id"), id),
+                cb.equal(root.get("version"), expectedVersion));
+
+        return entityManager.createQuery(update).executeUpdate();
+    }
+}
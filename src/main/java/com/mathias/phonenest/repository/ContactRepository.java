@@ -1,14 +1,27 @@
 package com.mathias.phonenest.repository;
 
 import com.mathias.phonenest.domain.entities.Contact;
-import com.mathias.phonenest.domain.enums.Group;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface ContactRepository extends JpaRepository<Contact, Long> {
+public interface ContactRepository extends JpaRepository<Contact, Long>, JpaSpecificationExecutor<Contact>,
+        ContactPatchRepository, ContactBulkRepository {
+
+    // Membership is read from contact_group_member_tbl, which covers every group of a contact, not only group_name.
+    String MEMBERS_OF_GROUP = "SELECT m.id.contactId FROM ContactGroupMember m, ContactGroup g "
+            + "WHERE m.id.groupId = g.id AND g.name = :groupName";
 
     /**
      * Retrieves a Contact entity by its email address.
@@ -27,14 +40,15 @@ public interface ContactRepository extends JpaRepository<Contact, Long> {
     Optional<Contact> findByPhoneNumber(String phoneNumber);
 
     /**
-     * Retrieves a list of Contact entities that belong to the specified group.
-     * The returned list is sorted according to the given Sort parameter.
+     * Retrieves a list of Contact entities that are members of the specified group, whether or
+     * not it is their primary group. The returned list is sorted according to the given Sort parameter.
      *
-     * @param groupName the group (e.g., FAMILY, FRIENDS, WORK) to filter contacts by
+     * @param groupName the upper-case name of the group to filter contacts by
      * @param sort the sorting criteria to apply to the result list
      * @return a List of Contact entities that belong to the specified group, sorted as per the provided criteria
      */
-    List<Contact> findByGroupName(Group groupName, Sort sort);
+    @Query("SELECT c FROM Contact c WHERE c.id IN (" + MEMBERS_OF_GROUP + ")")
+    List<Contact> findByGroupMembership(@Param("groupName") String groupName, Sort sort);
 
 
     /**
@@ -57,4 +71,118 @@ public interface ContactRepository extends JpaRepository<Contact, Long> {
     List<Contact> findByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCaseOrEmailContainingIgnoreCaseOrPhoneNumberContainingIgnoreCase(
             String firstName, String lastName, String email, String phoneNumber);
 
+    /*
+     * The Stream queries below read through a cursor, 500 rows per round trip, and must be consumed
+     * inside a transaction. Callers should detach each contact once it has been handled.
+     */
+
+    /**
+     * Streams all live contacts in the given order.
+     *
+     * @param sort the sorting criteria to apply
+     * @return a Stream of Contact entities; close it when done
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT c FROM Contact c")
+    Stream<Contact> streamAll(Sort sort);
+
+    /**
+     * Streams the live members of one group in the given order.
+     *
+     * @param groupName the upper-case name of the group to filter contacts by
+     * @param sort      the sorting criteria to apply
+     * @return a Stream of Contact entities; close it when done
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT c FROM Contact c WHERE c.id IN (" + MEMBERS_OF_GROUP + ")")
+    Stream<Contact> streamByGroupMembership(@Param("groupName") String groupName, Sort sort);
+
+    /**
+     * Streams the live contacts that match the same search as
+     * findByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCaseOrEmailContainingIgnoreCaseOrPhoneNumberContainingIgnoreCase.
+     *
+     * @param firstName   the search term to match against the first name (case-insensitive)
+     * @param lastName    the search term to match against the last name (case-insensitive)
+     * @param email       the search term to match against the email address (case-insensitive)
+     * @param phoneNumber the search term to match against the phone number (case-insensitive)
+     * @return a Stream of Contact entities; close it when done
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Contact> streamByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCaseOrEmailContainingIgnoreCaseOrPhoneNumberContainingIgnoreCase(
+            String firstName, String lastName, String email, String phoneNumber);
+
+    /**
+     * Retrieves only the current version of a live contact.
+     *
+     * @param id the id of the contact
+     * @return an Optional containing the version if the contact exists; otherwise, an empty Optional
+     */
+    @Query("SELECT c.version FROM Contact c WHERE c.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /**
+     * Soft-deletes all live contacts with the given ids in a single UPDATE statement.
+     *
+     * @param ids       the ids of the contacts to delete
+     * @param deletedAt the deletion timestamp to record
+     * @return the number of contacts deleted
+     */
+    @Modifying
+    @Query("UPDATE Contact c SET c.deletedAt = :deletedAt WHERE c.id IN :ids")
+    int softDeleteAllByIdIn(@Param("ids") List<Long> ids, @Param("deletedAt") LocalDateTime deletedAt);
+
+    /*
+     * The native queries below bypass the entity-level "deleted_at IS NULL" restriction on purpose:
+     * they are used by the archiver and by restore, which have to see soft-deleted rows.
+     */
+
+    /**
+     * Retrieves the next batch of soft-deleted contacts, oldest id first.
+     *
+     * @param limit the maximum number of rows to return
+     * @return a List of soft-deleted Contact entities
+     */
+    @Query(value = "SELECT * FROM contact_tbl WHERE deleted_at IS NOT NULL ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Contact> findSoftDeletedBatch(@Param("limit") int limit);
+
+    /**
+     * Retrieves a contact by its id only if it is soft-deleted.
+     *
+     * @param id the id of the contact
+     * @return an Optional containing the soft-deleted Contact; otherwise, an empty Optional
+     */
+    @Query(value = "SELECT * FROM contact_tbl WHERE id = :id AND deleted_at IS NOT NULL", nativeQuery = true)
+    Optional<Contact> findSoftDeletedById(@Param("id") Long id);
+
+    /**
+     * Retrieves the next batch of live contacts that have not been updated since the given time.
+     *
+     * @param inactiveBefore contacts last updated before this time are returned
+     * @param limit          the maximum number of rows to return
+     * @return a List of inactive Contact entities
+     */
+    @Query(value = "SELECT * FROM contact_tbl WHERE deleted_at IS NULL AND updated_at < :inactiveBefore "
+            + "ORDER BY updated_at, id LIMIT :limit", nativeQuery = true)
+    List<Contact> findInactiveBatch(@Param("inactiveBefore") LocalDateTime inactiveBefore, @Param("limit") int limit);
+
+    /**
+     * Physically removes the given rows from contact_tbl, whether soft-deleted or not.
+     *
+     * @param ids the ids of the rows to remove
+     * @return the number of rows removed
+     */
+    @Modifying
+    @Query(value = "DELETE FROM contact_tbl WHERE id IN (:ids)", nativeQuery = true)
+    int purgeAllByIdIn(@Param("ids") List<Long> ids);
+
+    /**
+     * Clears the deleted-at marker of a soft-deleted contact.
+     *
+     * @param id the id of the contact to restore
+     * @return 1 if a soft-deleted contact was restored, otherwise 0
+     */
+    @Modifying
+    @Query(value = "UPDATE contact_tbl SET deleted_at = NULL WHERE id = :id AND deleted_at IS NOT NULL", nativeQuery = true)
+    int undeleteById(@Param("id") Long id);
+
 }
@@ -0,0 +1,159 @@
+package com.mathias.phonenest.repository;
+
+import com.mathias.phonenest.domain.entities.Contact;
+import com.mathias.phonenest.domain.entities.ContactGroupMember;
+import com.mathias.phonenest.domain.enums.ContactSortField;
+import com.mathias.phonenest.payload.request.ContactQueryRequest;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * JPA Specifications behind the structured contact query. The predicates are written so that
+ * each filter except hasImage can be looked up in an index: the groups in the membership table's
+ * index and the others in the indexes declared on {@link Contact}: prefix
+ * LIKE instead of substring LIKE, the stored email domain instead of a suffix match, and half-open
+ * date ranges.
+ */
+public final class ContactSpecifications {
+
+    private ContactSpecifications() {
+    }
+
+    /**
+     * Build a Specification that matches every filter set on the query request.
+     *
+     * @param queryRequest the structured query; unset filters are ignored.
+     * @param groupIds     ids of the requested groups, or null to ignore the groups filter.
+     * @return a Specification combining all supplied filters with AND.
+     */
+    public static Specification<Contact> matching(ContactQueryRequest queryRequest, Collection<Long> groupIds) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (groupIds != null) {
+                // Members of the groups, looked up in contact_group_member_tbl rather than by group_name.
+                Subquery<Long> members = query.subquery(Long.class);
+                Root<ContactGroupMember> member = members.from(ContactGroupMember.class);
+                members.select(member.get("id").get("contactId"))
+                        .where(member.get("id").get("groupId").in(groupIds));
+                predicates.add(root.get("id").in(members));
+            }
+            if (StringUtils.hasText(queryRequest.getNamePrefix())) {
+                predicates.add(cb.like(root.get("firstName"), escapeLike(queryRequest.getNamePrefix().trim()) + "%", '\\'));
+            }
+            if (StringUtils.hasText(queryRequest.getEmailDomain())) {
+                predicates.add(cb.equal(root.get("emailDomain"), queryRequest.getEmailDomain().trim().toLowerCase(Locale.ROOT)));
+            }
+            if (queryRequest.getCreatedFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), queryRequest.getCreatedFrom()));
+            }
+            if (queryRequest.getCreatedTo() != null) {
+                predicates.add(cb.lessThan(root.get("createdAt"), queryRequest.getCreatedTo()));
+            }
+            if (queryRequest.getUpdatedFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("updatedAt"), queryRequest.getUpdatedFrom()));
+            }
+            if (queryRequest.getUpdatedTo() != null) {
+                predicates.add(cb.lessThan(root.get("updatedAt"), queryRequest.getUpdatedTo()));
+            }
+            if (queryRequest.getHasImage() != null) {
+                Expression<String> image = root.get("contactImage");
+                predicates.add(queryRequest.getHasImage()
+                        ? cb.and(cb.isNotNull(image), cb.notEqual(image, ""))
+                        : cb.or(cb.isNull(image), cb.equal(image, "")));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Build the keyset predicate that selects the rows following the given position in
+     * (sort properties..., id) order. Sort values may be null; NULL sorts before every other
+     * value, as it does in MySQL and H2, so it comes first ascending and last descending.
+     *
+     * @param sortField  the sort order of the query.
+     * @param direction  the sort direction of the query.
+     * @param sortValues the sort property values of the last row of the previous page.
+     * @param id         the id of the last row of the previous page.
+     * @return a Specification matching only rows after that position.
+     */
+    public static Specification<Contact> after(ContactSortField sortField, Sort.Direction direction,
+                                               List<Object> sortValues, Long id) {
+        List<String> properties = new ArrayList<>(sortField.getProperties());
+        properties.add("id");
+        List<Object> values = new ArrayList<>(sortValues);
+        values.add(id);
+        boolean ascending = direction.isAscending();
+
+        return (root, query, cb) -> {
+            // (a, b, id) > (x, y, z)  ==  a > x OR (a = x AND b > y) OR (a = x AND b = y AND id > z)
+            List<Predicate> alternatives = new ArrayList<>();
+            for (int i = 0; i < properties.size(); i++) {
+                List<Predicate> parts = new ArrayList<>();
+                for (int j = 0; j < i; j++) {
+                    Expression<?> path = root.get(properties.get(j));
+                    parts.add(values.get(j) == null ? cb.isNull(path) : cb.equal(path, values.get(j)));
+                }
+                parts.add(compare(cb, root.get(properties.get(i)), values.get(i), ascending, false));
+                alternatives.add(cb.and(parts.toArray(new Predicate[0])));
+            }
+            // The redundant bound on the leading column lets the database start a range scan there.
+            return cb.and(
+                    compare(cb, root.get(properties.get(0)), values.get(0), ascending, true),
+                    cb.or(alternatives.toArray(new Predicate[0])));
+        };
+    }
+
+    /**
+     * Translate a sort field and direction into a Sort that always ends with the id.
+     *
+     * @param indexOrder start with deletedAt, which is NULL on every row read. The order then
+     *                   matches the idx_contact_live_* index of the sort field, so the database
+     *                   reads that index in order instead of sorting every live contact. Only
+     *                   for queries without an indexed filter, which should use the filter's index.
+     */
+    public static Sort sortOf(ContactSortField sortField, Sort.Direction direction, boolean indexOrder) {
+        List<String> properties = new ArrayList<>();
+        if (indexOrder) {
+            properties.add("deletedAt");
+        }
+        properties.addAll(sortField.getProperties());
+        properties.add("id");
+        return Sort.by(direction, properties.toArray(new String[0]));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate compare(CriteriaBuilder cb, Expression path, Object value,
+                                     boolean ascending, boolean inclusive) {
+        if (value == null) {
+            // Every value is after NULL ascending and none is after it descending.
+            if (ascending) {
+                return inclusive ? cb.conjunction() : cb.isNotNull(path);
+            }
+            return inclusive ? cb.isNull(path) : cb.disjunction();
+        }
+        Comparable comparable = (Comparable) value;
+        if (ascending) {
+            return inclusive ? cb.greaterThanOrEqualTo(path, comparable) : cb.greaterThan(path, comparable);
+        }
+        // Descending, the NULLs still follow every non-null value.
+        Predicate before = inclusive ? cb.lessThanOrEqualTo(path, comparable) : cb.lessThan(path, comparable);
+        return cb.or(before, cb.isNull(path));
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,11 @@
+package com.mathias.phonenest.service;
+
+import com.mathias.phonenest.payload.response.ContactResponse;
+
+public interface ContactArchiveService {
+
+ int archiveContacts();
+
+ ContactResponse restoreContact(Long contactId);
+
+}
@@ -0,0 +1,31 @@
+package com.mathias.phonenest.service;
+
+import com.mathias.phonenest.payload.response.ContactGroupDto;
+import com.mathias.phonenest.payload.response.ContactResponse;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface ContactGroupService {
+
+ List<ContactGroupDto> getGroups();
+
+ ContactResponse setContactGroups(Long contactId, Set<String> groups);
+
+ void addMembers(Map<Long, ? extends Collection<String>> groupNamesByContact);
+
+ List<String> groupNamesOf(Long contactId);
+
+ List<Long> groupIdsOf(Set<String> names);
+
+ List<Long> selectContactIds(Set<String> allOf, Set<String> anyOf, Set<String> noneOf, Long afterId, int limit);
+
+ void reindexContacts(Collection<Long> contactIds);
+
+ void removeFromIndex(Collection<Long> contactIds);
+
+ void rebuildIndex();
+
+}
@@ -2,12 +2,17 @@ package com.mathias.phonenest.service;
 
 import com.mathias.phonenest.domain.entities.Contact;
 import com.mathias.phonenest.domain.enums.Group;
+import com.mathias.phonenest.payload.request.ContactGroupQueryRequest;
+import com.mathias.phonenest.payload.request.ContactQueryRequest;
 import com.mathias.phonenest.payload.request.ContactRequest;
+import com.mathias.phonenest.payload.request.PatchContactRequest;
 import com.mathias.phonenest.payload.request.UpdateContactRequest;
+import com.mathias.phonenest.payload.response.ContactPageResponse;
 import com.mathias.phonenest.payload.response.ContactReportDto;
 import com.mathias.phonenest.payload.response.ContactResponse;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ContactService {
 
@@ -15,6 +20,8 @@ public interface ContactService {
 
  ContactResponse updateContact(Long id, UpdateContactRequest updateRequest);
 
+ ContactResponse patchContact(Long id, long expectedVersion, PatchContactRequest patchRequest);
+
  String deleteContact(Long contactId);
 
  String bulkDeleteContacts(List<Long> ids);
@@ -25,6 +32,16 @@ public interface ContactService {
 
  List<ContactReportDto> getContactByGroup(Group groupName);
 
+ void streamAllContacts(Consumer<ContactReportDto> consumer);
+
+ void streamContactsByGroup(Group groupName, Consumer<ContactReportDto> consumer);
+
+ void streamSearchContacts(String query, Consumer<ContactReportDto> consumer);
+
+ ContactPageResponse queryContacts(ContactQueryRequest queryRequest);
+
+ ContactPageResponse queryContactsByGroups(ContactGroupQueryRequest queryRequest);
+
  void saveAllContacts(List<Contact> contacts);
 
  List<Contact> getAllContactsEntity();
@@ -0,0 +1,11 @@
+package com.mathias.phonenest.service;
+
+import com.mathias.phonenest.payload.response.SnapshotManifest;
+
+public interface ContactSnapshotService {
+
+ SnapshotManifest createSnapshot();
+
+ SnapshotManifest restoreSnapshot(String name);
+
+}
@@ -0,0 +1,303 @@
+package com.mathias.phonenest.service.Impl;
+
+import com.mathias.phonenest.domain.entities.Contact;
+import com.mathias.phonenest.domain.entities.ContactArchive;
+import com.mathias.phonenest.exceptions.AlreadyExistException;
+import com.mathias.phonenest.exceptions.NotFoundException;
+import com.mathias.phonenest.payload.response.ContactReportDto;
+import com.mathias.phonenest.payload.response.ContactResponse;
+import com.mathias.phonenest.repository.ContactArchiveRepository;
+import com.mathias.phonenest.repository.ContactGroupMemberRepository;
+import com.mathias.phonenest.repository.ContactRepository;
+import com.mathias.phonenest.service.ContactArchiveService;
+import com.mathias.phonenest.service.ContactGroupService;
+import com.mathias.phonenest.util.AfterCommit;
+import com.mathias.phonenest.util.ContactWriteGate;
+import com.mathias.phonenest.util.RequestCoalescer;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ContactArchiveServiceImpl implements ContactArchiveService {
+
+    private static final String PENDING_SUFFIX = ".csv.gz.pending";
+
+    private static final String[] ARCHIVE_HEADERS = {"id", "firstName", "lastName", "email", "phoneNumber",
+            "contactImage", "address", "groupName", "createdAt", "updatedAt", "deletedAt", "archivedAt"};
+
+    private final ContactRepository contactRepository;
+    private final ContactArchiveRepository contactArchiveRepository;
+    private final ContactGroupMemberRepository contactGroupMemberRepository;
+    private final ContactGroupService contactGroupService;
+    private final TransactionTemplate transactionTemplate;
+    private final DataSource dataSource;
+    private final ContactWriteGate contactWriteGate;
+    private final RequestCoalescer<String, List<ContactReportDto>> contactReadCoalescer;
+
+    @Value("${phonenest.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${phonenest.archive.batch-size:500}")
+    private int batchSize;
+
+    @Value("${phonenest.archive.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${phonenest.archive.pause-between-batches:500ms}")
+    private Duration pauseBetweenBatches;
+
+    @Value("${phonenest.archive.inactive-after:0d}")
+    private Duration inactiveAfter;
+
+    @Value("${phonenest.archive.directory:archive}")
+    private String archiveDirectory;
+
+    @Scheduled(initialDelayString = "${phonenest.archive.initial-delay:PT5M}",
+            fixedDelayString = "${phonenest.archive.interval:PT1H}")
+    public void archiveOnSchedule() {
+        if (enabled) {
+            archiveContacts();
+        }
+    }
+
+    @Override
+    public synchronized int archiveContacts() {
+        int archived = 0;
+
+        // Work in bounded batches, each in its own short transaction, and stop early rather than
+        // compete with request threads for database connections.
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            if (foregroundWaitingForConnections()) {
+                log.info("Archiver backing off: request threads are waiting for database connections");
+                break;
+            }
+            if (!contactWriteGate.tryEnterWrite()) {
+                log.info("Archiver backing off: a snapshot is being restored");
+                break;
+            }
+            Integer moved;
+            try {
+                moved = transactionTemplate.execute(status -> archiveBatch());
+            } finally {
+                contactWriteGate.exitWrite();
+            }
+            if (moved == null || moved == 0) {
+                break;
+            }
+            archived += moved;
+            if (!pause()) {
+                break;
+            }
+        }
+
+        if (archived > 0) {
+            contactReadCoalescer.invalidate();
+            log.info("Archived {} contacts", archived);
+        }
+        return archived;
+    }
+
+    @Override
+    @Transactional
+    public ContactResponse restoreContact(Long contactId) {
+        // A contact that is only soft-deleted just needs its marker cleared.
+        Optional<Contact> softDeleted = contactRepository.findSoftDeletedById(contactId);
+        if (softDeleted.isPresent()) {
+            ensureNotTaken(softDeleted.get().getEmail(), softDeleted.get().getPhoneNumber());
+            contactRepository.undeleteById(contactId);
+            contactGroupService.reindexContacts(List.of(contactId));
+            AfterCommit.run(contactReadCoalescer::invalidate);
+            return restoredResponse(contactId);
+        }
+
+        // Otherwise bring it back from the archive table under its original id.
+        ContactArchive archived = contactArchiveRepository.findById(contactId)
+                .orElseThrow(() -> new NotFoundException("No deleted or archived contact with id " + contactId));
+        ensureNotTaken(archived.getEmail(), archived.getPhoneNumber());
+
+        contactArchiveRepository.copyBackToContacts(contactId);
+        contactArchiveRepository.deleteById(contactId);
+        // Its memberships were archived with it, so it comes back with its groups.
+        contactArchiveRepository.copyMembershipsBackToContacts(contactId);
+        contactArchiveRepository.deleteMembershipsById(contactId);
+        contactGroupService.reindexContacts(List.of(contactId));
+        AfterCommit.run(contactReadCoalescer::invalidate);
+        return restoredResponse(contactId);
+    }
+
+    private int archiveBatch() {
+        List<Contact> candidates = contactRepository.findSoftDeletedBatch(batchSize);
+        if (candidates.isEmpty() && !inactiveAfter.isZero()) {
+            candidates = contactRepository.findInactiveBatch(LocalDateTime.now().minus(inactiveAfter), batchSize);
+        }
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        LocalDateTime archivedAt = LocalDateTime.now();
+        List<Long> ids = candidates.stream().map(Contact::getId).toList();
+
+        contactArchiveRepository.copyFromContacts(ids, archivedAt);
+        contactArchiveRepository.copyMembershipsFromContacts(ids);
+        Path pending = writePendingBatch(candidates, archivedAt);
+        // The batch only reaches the archive file once the rows have really left contact_tbl;
+        // otherwise they would be written again by the next run.
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    appendToArchiveFile(pending);
+                } else {
+                    deletePendingBatch(pending);
+                }
+            }
+        });
+        contactRepository.purgeAllByIdIn(ids);
+        contactGroupMemberRepository.deleteByContactIdIn(ids);
+        contactGroupService.removeFromIndex(ids);
+        return ids.size();
+    }
+
+    /**
+     * Write the batch as one gzip member to a pending file next to the archive files. Failing here
+     * rolls back the batch, so the rows stay in contact_tbl until the file can be written.
+     */
+    private Path writePendingBatch(List<Contact> contacts, LocalDateTime archivedAt) {
+        Path directory = Paths.get(archiveDirectory);
+        Path pending = null;
+        try {
+            Files.createDirectories(directory);
+            pending = Files.createTempFile(directory, "contact-archive-", PENDING_SUFFIX);
+            try (OutputStream out = Files.newOutputStream(pending);
+                 Writer writer = new OutputStreamWriter(new GZIPOutputStream(out), StandardCharsets.UTF_8);
+                 CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+                for (Contact contact : contacts) {
+                    csvPrinter.printRecord(Arrays.asList(
+                            contact.getId(),
+                            contact.getFirstName(),
+                            contact.getLastName(),
+                            contact.getEmail(),
+                            contact.getPhoneNumber(),
+                            contact.getContactImage(),
+                            contact.getAddress(),
+                            contact.getGroupName(),
+                            contact.getCreatedAt(),
+                            contact.getUpdatedAt(),
+                            contact.getDeletedAt(),
+                            archivedAt));
+                }
+            }
+            return pending;
+        } catch (IOException e) {
+            if (pending != null) {
+                deletePendingBatch(pending);
+            }
+            throw new UncheckedIOException("Failed to write archive batch to " + directory, e);
+        }
+    }
+
+    /**
+     * Append a committed batch to today's archive file. Each batch is its own gzip member, which
+     * standard gzip readers treat as one continuous stream; a new file starts with a header member.
+     * The rows are already in contact_archive_tbl, so a failure only leaves the pending file behind.
+     */
+    private void appendToArchiveFile(Path pending) {
+        Path file = pending.resolveSibling("contact-archive-" + LocalDate.now() + ".csv.gz");
+        try {
+            if (Files.notExists(file)) {
+                try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE_NEW);
+                     Writer writer = new OutputStreamWriter(new GZIPOutputStream(out), StandardCharsets.UTF_8);
+                     CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+                    csvPrinter.printRecord((Object[]) ARCHIVE_HEADERS);
+                }
+            }
+            try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+                Files.copy(pending, out);
+            }
+            Files.delete(pending);
+        } catch (IOException e) {
+            log.error("Archived contacts could not be appended to {}; they are kept in {} and in contact_archive_tbl",
+                    file, pending, e);
+        }
+    }
+
+    private void deletePendingBatch(Path pending) {
+        try {
+            Files.deleteIfExists(pending);
+        } catch (IOException e) {
+            log.warn("Could not delete the pending archive batch {}", pending, e);
+        }
+    }
+
+    private boolean foregroundWaitingForConnections() {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+                return pool != null && pool.getThreadsAwaitingConnection() > 0;
+            }
+        } catch (SQLException e) {
+            log.debug("Could not inspect the connection pool", e);
+        }
+        return false;
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(pauseBetweenBatches.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Another live contact may have taken the email or phone number since the contact was deleted.
+    private void ensureNotTaken(String email, String phoneNumber) {
+        if (contactRepository.findByEmail(email).isPresent()) {
+            throw new AlreadyExistException("A contact with the email " + email + " already exists.");
+        }
+        if (contactRepository.findByPhoneNumber(phoneNumber).isPresent()) {
+            throw new AlreadyExistException("A contact with the phone number " + phoneNumber + " already exists.");
+        }
+    }
+
+    private ContactResponse restoredResponse(Long contactId) {
+        return ContactResponse.builder()
+                .responseCode("003")
+                .responseMessage("Contact " + contactId + " has been Restored")
+                .build();
+    }
+}
@@ -0,0 +1,294 @@
+package com.mathias.phonenest.service.Impl;
+
+import com.mathias.phonenest.domain.entities.Contact;
+import com.mathias.phonenest.domain.entities.ContactGroup;
+import com.mathias.phonenest.domain.entities.ContactGroupMember;
+import com.mathias.phonenest.domain.entities.ContactGroupMemberId;
+import com.mathias.phonenest.domain.enums.Group;
+import com.mathias.phonenest.exceptions.InvalidFormatException;
+import com.mathias.phonenest.exceptions.NotFoundException;
+import com.mathias.phonenest.payload.response.ContactGroupDto;
+import com.mathias.phonenest.payload.response.ContactReportDto;
+import com.mathias.phonenest.payload.response.ContactResponse;
+import com.mathias.phonenest.repository.ContactGroupMemberRepository;
+import com.mathias.phonenest.repository.ContactGroupRepository;
+import com.mathias.phonenest.repository.ContactRepository;
+import com.mathias.phonenest.service.ContactGroupService;
+import com.mathias.phonenest.util.AfterCommit;
+import com.mathias.phonenest.util.CsvHelper;
+import com.mathias.phonenest.util.GroupBitmapIndex;
+import com.mathias.phonenest.util.RequestCoalescer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Group membership lives in contact_group_member_tbl and is mirrored in an in-memory bitmap
+ * index, so membership queries and the groups shown with every contact cost no SQL. The index
+ * is changed only after the database transaction has committed. It is local to this instance:
+ * writes made by another instance are picked up when the index is rebuilt, which happens every
+ * phonenest.groups.index.refresh-interval. Every write decides against the table, never the index.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ContactGroupServiceImpl implements ContactGroupService {
+
+    private static final int MAX_NAME_LENGTH = 100;
+
+    private final ContactGroupRepository contactGroupRepository;
+    private final ContactGroupMemberRepository contactGroupMemberRepository;
+    private final ContactRepository contactRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final GroupBitmapIndex contactGroupIndex;
+    private final RequestCoalescer<String, List<ContactReportDto>> contactReadCoalescer;
+
+    // Groups are few and never removed, so both directions of the name/id mapping are cached.
+    private final Map<String, Long> groupIdsByName = new ConcurrentHashMap<>();
+    private final Map<Long, String> groupNamesById = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndexOnStartup() {
+        // The former fixed groups always exist.
+        for (Group group : Group.values()) {
+            groupIdOf(group.name());
+        }
+        rebuildIndex();
+    }
+
+    @Scheduled(initialDelayString = "${phonenest.groups.index.refresh-interval:PT5M}",
+            fixedDelayString = "${phonenest.groups.index.refresh-interval:PT5M}")
+    public void refreshIndexOnSchedule() {
+        rebuildIndex();
+    }
+
+    @Override
+    public List<ContactGroupDto> getGroups() {
+        return groupNamesById.entrySet().stream()
+                .map(group -> ContactGroupDto.builder()
+                        .name(group.getValue())
+                        .contactCount(contactGroupIndex.count(group.getKey()))
+                        .build())
+                .sorted(Comparator.comparing(ContactGroupDto::getName))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional
+    public ContactResponse setContactGroups(Long contactId, Set<String> groups) {
+        Contact contact = contactRepository.findById(contactId)
+                .orElseThrow(() -> new NotFoundException("Contact with id " + contactId + " not found"));
+
+        Set<String> names = normalize(groups == null ? List.of() : groups);
+        Set<Long> wanted = new HashSet<>();
+        names.forEach(name -> wanted.add(groupIdOf(name)));
+        Set<Long> current = new HashSet<>(contactGroupMemberRepository.findGroupIdsByContactId(contactId));
+
+        Set<Long> removed = new HashSet<>(current);
+        removed.removeAll(wanted);
+        if (!removed.isEmpty()) {
+            contactGroupMemberRepository.deleteByContactIdAndGroupIdIn(contactId, removed);
+        }
+        List<ContactGroupMemberId> added = wanted.stream()
+                .filter(groupId -> !current.contains(groupId))
+                .map(groupId -> new ContactGroupMemberId(contactId, groupId))
+                .toList();
+        if (!added.isEmpty()) {
+            contactGroupMemberRepository.insertAll(added);
+        }
+
+        // The primary group must stay one of the contact's groups.
+        if (contact.getGroupName() != null && !names.contains(contact.getGroupName().name())) {
+            contact.setGroupName(null);
+        }
+
+        afterCommit(() -> contactGroupIndex.put(contactId, wanted));
+        return ContactResponse.builder()
+                .responseCode("002")
+                .responseMessage("Groups of contact " + contactId + " have been Updated")
+                .build();
+    }
+
+    @Override
+    public void addMembers(Map<Long, ? extends Collection<String>> groupNamesByContact) {
+        Map<Long, Set<Long>> groupIdsByContact = new LinkedHashMap<>();
+        List<ContactGroupMemberId> rows = new ArrayList<>();
+        groupNamesByContact.forEach((contactId, names) -> {
+            Set<Long> groupIds = new LinkedHashSet<>();
+            for (String name : normalize(names)) {
+                Long groupId = groupIdOf(name);
+                groupIds.add(groupId);
+                rows.add(new ContactGroupMemberId(contactId, groupId));
+            }
+            groupIdsByContact.put(contactId, groupIds);
+        });
+
+        // The index may lag behind other instances, so existing memberships are skipped by the database.
+        if (!rows.isEmpty()) {
+            contactGroupMemberRepository.insertMissing(rows);
+        }
+        // Contacts without any group are indexed too, so "not in" queries can find them.
+        afterCommit(() -> contactGroupIndex.putAll(groupIdsByContact));
+    }
+
+    @Override
+    public List<String> groupNamesOf(Long contactId) {
+        return contactGroupIndex.groupsOf(contactId).stream()
+                .map(groupNamesById::get)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Ids of the named groups that exist. A group created by another instance since the last
+     * rebuild is looked up in the table.
+     */
+    @Override
+    public List<Long> groupIdsOf(Set<String> names) {
+        List<Long> groupIds = new ArrayList<>();
+        for (String name : normalize(names)) {
+            Long groupId = groupIdsByName.get(name);
+            if (groupId == null) {
+                groupId = contactGroupRepository.findByName(name).map(group -> {
+                    cache(group);
+                    return group.getId();
+                }).orElse(null);
+            }
+            if (groupId != null) {
+                groupIds.add(groupId);
+            }
+        }
+        return groupIds;
+    }
+
+    @Override
+    public List<Long> selectContactIds(Set<String> allOf, Set<String> anyOf, Set<String> noneOf, Long afterId, int limit) {
+        List<Long> allOfIds = new ArrayList<>();
+        for (String name : normalize(allOf)) {
+            Long groupId = groupIdsByName.get(name);
+            if (groupId == null) {
+                // Nobody is in a group that does not exist.
+                return List.of();
+            }
+            allOfIds.add(groupId);
+        }
+        List<Long> anyOfIds = knownGroupIds(anyOf);
+        if (!anyOf.isEmpty() && anyOfIds.isEmpty()) {
+            return List.of();
+        }
+        return contactGroupIndex.select(allOfIds, anyOfIds, knownGroupIds(noneOf), afterId, limit);
+    }
+
+    @Override
+    public void reindexContacts(Collection<Long> contactIds) {
+        Map<Long, List<Long>> groupIdsByContact = new HashMap<>();
+        contactIds.forEach(contactId -> groupIdsByContact.put(contactId, new ArrayList<>()));
+        for (ContactGroupMember member : contactGroupMemberRepository.findAllByContactIdIn(contactIds)) {
+            groupIdsByContact.get(member.getId().getContactId()).add(member.getId().getGroupId());
+        }
+        afterCommit(() -> groupIdsByContact.forEach(contactGroupIndex::put));
+    }
+
+    @Override
+    public void removeFromIndex(Collection<Long> contactIds) {
+        List<Long> removed = List.copyOf(contactIds);
+        afterCommit(() -> contactGroupIndex.removeAll(removed));
+    }
+
+    /**
+     * Reload the index from the database. Only reads; contacts created before groups were
+     * user-defined are added to their primary group by the one-time SQL in the README.
+     */
+    @Override
+    public synchronized void rebuildIndex() {
+        long started = System.nanoTime();
+        contactGroupRepository.findAll().forEach(this::cache);
+
+        long[] loaded = {0, 0};
+        // Changes this instance commits while the scans run are replayed onto their result.
+        contactGroupIndex.rebuild((contacts, members) -> {
+            contactRepository.forEachLiveContactId(contacts::addLong);
+            contactGroupMemberRepository.forEachLiveMembership((contactId, groupId) ->
+                    members.computeIfAbsent(groupId, id -> new Roaring64NavigableMap()).addLong(contactId));
+            loaded[0] = contacts.getLongCardinality();
+            loaded[1] = members.size();
+        });
+        contactReadCoalescer.invalidate();
+        log.info("Group index built: {} contacts, {} groups, {} bytes, {} ms", loaded[0], loaded[1],
+                contactGroupIndex.sizeInBytes(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private Long groupIdOf(String name) {
+        Long groupId = groupIdsByName.get(name);
+        return groupId != null ? groupId : createGroup(name);
+    }
+
+    /**
+     * Create the group in the caller's transaction, on the connection it already holds; a second
+     * transaction would need another pooled connection while the caller keeps one. The group is
+     * cached only once that transaction has committed, as a rollback removes it again.
+     */
+    private Long createGroup(String name) {
+        return transactionTemplate.execute(status -> {
+            contactGroupRepository.insertIfMissing(name, LocalDateTime.now());
+            ContactGroup group = contactGroupRepository.findLockedByName(name)
+                    .orElseThrow(() -> new IllegalStateException("Group " + name + " was not created"));
+            AfterCommit.run(() -> cache(group));
+            return group.getId();
+        });
+    }
+
+    private void cache(ContactGroup group) {
+        groupIdsByName.put(group.getName(), group.getId());
+        groupNamesById.put(group.getId(), group.getName());
+    }
+
+    private List<Long> knownGroupIds(Set<String> names) {
+        return normalize(names).stream()
+                .map(groupIdsByName::get)
+                .filter(groupId -> groupId != null)
+                .toList();
+    }
+
+    private static Set<String> normalize(Collection<String> names) {
+        Set<String> normalized = new LinkedHashSet<>();
+        for (String name : names) {
+            String value = name == null ? "" : name.trim().toUpperCase(Locale.ROOT);
+            if (value.isEmpty() || value.length() > MAX_NAME_LENGTH || value.contains(CsvHelper.GROUP_SEPARATOR)) {
+                throw new InvalidFormatException("Group names must be 1 to " + MAX_NAME_LENGTH
+                        + " characters long and must not contain '" + CsvHelper.GROUP_SEPARATOR + "'.");
+            }
+            normalized.add(value);
+        }
+        return normalized;
+    }
+
+    // Keeps the index in step with what other transactions can see, and never ahead of a rollback.
+    private void afterCommit(Runnable action) {
+        AfterCommit.run(() -> {
+            action.run();
+            contactReadCoalescer.invalidate();
+        });
+    }
+}
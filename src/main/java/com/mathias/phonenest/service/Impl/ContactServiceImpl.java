@@ -1,31 +1,78 @@
 package com.mathias.phonenest.service.Impl;
 
 import com.mathias.phonenest.domain.entities.Contact;
+import com.mathias.phonenest.domain.enums.ContactSortField;
 import com.mathias.phonenest.domain.enums.Group;
 import com.mathias.phonenest.exceptions.AlreadyExistException;
 import com.mathias.phonenest.exceptions.InvalidFormatException;
 import com.mathias.phonenest.exceptions.NotFoundException;
+import com.mathias.phonenest.exceptions.PreconditionFailedException;
+import com.mathias.phonenest.payload.request.ContactGroupQueryRequest;
+import com.mathias.phonenest.payload.request.ContactQueryRequest;
 import com.mathias.phonenest.payload.request.ContactRequest;
+import com.mathias.phonenest.payload.request.PatchContactRequest;
 import com.mathias.phonenest.payload.request.UpdateContactRequest;
+import com.mathias.phonenest.payload.response.ContactPageResponse;
 import com.mathias.phonenest.payload.response.ContactReportDto;
 import com.mathias.phonenest.payload.response.ContactResponse;
 import com.mathias.phonenest.repository.ContactRepository;
+import com.mathias.phonenest.repository.ContactSpecifications;
+import com.mathias.phonenest.service.ContactGroupService;
 import com.mathias.phonenest.service.ContactService;
+import com.mathias.phonenest.util.AfterCommit;
+import com.mathias.phonenest.util.ContactCursor;
+import com.mathias.phonenest.util.RequestCoalescer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class ContactServiceImpl implements ContactService {
 
+    private static final int DEFAULT_QUERY_LIMIT = 50;
+    private static final int MAX_QUERY_LIMIT = 500;
+
+    // Ids per statement for bulk operations; keeps IN lists well below driver and server limits.
+    private static final int BULK_CHUNK_SIZE = 1000;
+
+    // Define a regex pattern for the phone number:
+    // ^        -> start of the string
+    // \\d{11}  -> exactly 11 digits (\\d represents a digit)
+    // $        -> end of the string
+    private static final String PHONE_REGEX = "^\\d{11}$";
+
     private final ContactRepository contactRepository;
+    private final ContactGroupService contactGroupService;
+
+    // Concurrent identical read requests share one query and its result, so the lists are immutable.
+    // Writes drop it after their commit, so no read can cache what was there before.
+    private final RequestCoalescer<String, List<ContactReportDto>> contactReadCoalescer;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     @Override
+    @Transactional
     public ContactResponse createContact(ContactRequest contactRequest) {
 
         // Check if a contact with the provided email already exists.
@@ -39,14 +86,8 @@ public class ContactServiceImpl implements ContactService {
         if (contactRepository.findByPhoneNumber(contactRequest.getPhoneNumber()).isPresent()) {
             throw new AlreadyExistException("A contact with the phone number " + contactRequest.getPhoneNumber() + " already exists.");
         }
-        // Define a regex pattern for the phone number:
-        // ^        -> start of the string
-        // \\d{11}  -> exactly 11 digits (\\d represents a digit)
-        // $        -> end of the string
-        String phoneRegex = "^\\d{11}$";
-
         // Validate that the phone number matches the regex pattern.
-        if (!contactRequest.getPhoneNumber().matches(phoneRegex)) {
+        if (!contactRequest.getPhoneNumber().matches(PHONE_REGEX)) {
             throw new InvalidFormatException("Phone number must be exactly 11 digits long.");
         }
 
@@ -63,6 +104,9 @@ public class ContactServiceImpl implements ContactService {
 
         // Save the newly created Contact entity to the database.
         Contact savedContact = contactRepository.save(contact);
+        contactGroupService.addMembers(Map.of(savedContact.getId(),
+                withPrimaryGroup(contactRequest.getGroupName(), contactRequest.getGroups())));
+        AfterCommit.run(contactReadCoalescer::invalidate);
 
         // Build and return a response indicating successful creation of the contact.
         return ContactResponse.builder()
@@ -72,6 +116,7 @@ public class ContactServiceImpl implements ContactService {
     }
 
     @Override
+    @Transactional
     public ContactResponse updateContact(Long id, UpdateContactRequest updateRequest) {
         // Retrieve the contact from the repository by its ID.
         Optional<Contact> existingContact = contactRepository.findById(id);
@@ -90,6 +135,9 @@ public class ContactServiceImpl implements ContactService {
 
             // Save the updated contact to the database.
             contactRepository.save(existingContactUpdate);
+            // A new primary group is added to the contact's groups; the previous one stays a regular group.
+            contactGroupService.addMembers(Map.of(id, withPrimaryGroup(updateRequest.getGroupName(), null)));
+            AfterCommit.run(contactReadCoalescer::invalidate);
 
             // Build and return a success response.
             return ContactResponse.builder()
@@ -102,44 +150,97 @@ public class ContactServiceImpl implements ContactService {
         throw new NotFoundException("Contact with id " + id + " not found");
     }
 
+    @Override
+    @Transactional
+    public ContactResponse patchContact(Long id, long expectedVersion, PatchContactRequest patchRequest) {
+        if (patchRequest.getFirstName() == null && patchRequest.getLastName() == null
+                && patchRequest.getPhoneNumber() == null && patchRequest.getContactImage() == null
+                && patchRequest.getAddress() == null && patchRequest.getGroupName() == null) {
+            throw new InvalidFormatException("At least one field must be supplied.");
+        }
+        // Supplied names must not be blank, same as on create.
+        if ((patchRequest.getFirstName() != null && !StringUtils.hasText(patchRequest.getFirstName()))
+                || (patchRequest.getLastName() != null && !StringUtils.hasText(patchRequest.getLastName()))) {
+            throw new InvalidFormatException("FirstName and LastName cannot be blank.");
+        }
+        if (patchRequest.getPhoneNumber() != null) {
+            if (!patchRequest.getPhoneNumber().matches(PHONE_REGEX)) {
+                throw new InvalidFormatException("Phone number must be exactly 11 digits long.");
+            }
+            // Changing the phone number costs one extra lookup for the duplicate check.
+            Optional<Contact> owner = contactRepository.findByPhoneNumber(patchRequest.getPhoneNumber());
+            if (owner.isPresent() && !owner.get().getId().equals(id)) {
+                throw new AlreadyExistException("A contact with the phone number " + patchRequest.getPhoneNumber() + " already exists.");
+            }
+        }
+
+        // One conditional UPDATE: it only matches if the client's version is still the current one.
+        int updated = contactRepository.patchIfVersionMatches(id, expectedVersion, patchRequest);
+
+        if (updated == 0) {
+            // Only the failure path pays for a second query, to tell a missing contact from a stale version.
+            Long currentVersion = contactRepository.findVersionById(id)
+                    .orElseThrow(() -> new NotFoundException("Contact with id " + id + " not found"));
+            throw new PreconditionFailedException("Contact " + id + " is at version " + currentVersion
+                    + ", not " + expectedVersion + ". Reload it and try again.");
+        }
+
+        if (patchRequest.getGroupName() != null) {
+            contactGroupService.addMembers(Map.of(id, withPrimaryGroup(patchRequest.getGroupName(), null)));
+        }
+        AfterCommit.run(contactReadCoalescer::invalidate);
+        return ContactResponse.builder()
+                .responseCode("002")
+                .responseMessage("Contact " + id + " has been Updated")
+                .build();
+    }
 
     @Override
     public String deleteContact(Long contactId) {
 
         contactRepository.deleteById(contactId);
+        contactGroupService.removeFromIndex(List.of(contactId));
+        AfterCommit.run(contactReadCoalescer::invalidate);
 
         return "Contact has been deleted";
     }
 
     @Override
+    @Transactional
     public String bulkDeleteContacts(List<Long> ids) {
-        List<Contact> contactList= contactRepository.findAllById(ids);
-        contactRepository.deleteAll(contactList);
+        // Soft-delete in chunks of ids, one UPDATE per chunk, instead of loading and deleting each contact.
+        LocalDateTime deletedAt = LocalDateTime.now();
+        for (int from = 0; from < ids.size(); from += BULK_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + BULK_CHUNK_SIZE, ids.size()));
+            contactRepository.softDeleteAllByIdIn(chunk, deletedAt);
+        }
+        contactGroupService.removeFromIndex(ids);
+        AfterCommit.run(contactReadCoalescer::invalidate);
         return "The Contacts have been deleted";
     }
 
     @Override
     public List<ContactReportDto> getAllContacts() {
+        return contactReadCoalescer.execute("all", this::loadAllContacts);
+    }
+
+    private List<ContactReportDto> loadAllContacts() {
         // Retrieve contacts sorted by first name and last name (alphabetical order)
         List<Contact> contacts = contactRepository.findAll(Sort.by(Sort.Direction.ASC, "firstName", "lastName"));
 
         // Map the contacts to DTOs
         return contacts.stream()
-                .map(contact -> ContactReportDto.builder()
-                        .firstName(contact.getFirstName())
-                        .lastName(contact.getLastName())
-                        .phoneNumber(contact.getPhoneNumber())
-                        .email(contact.getEmail())
-                        .contactImage(contact.getContactImage())
-                        .address(contact.getAddress())
-                        .groupName(contact.getGroupName())
-                        .build())
-                .collect(Collectors.toList());
+                .map(this::mapToReportDto)
+                .toList();
 
     }
 
     @Override
     public List<ContactReportDto> searchContacts(String query) {
+        return contactReadCoalescer.execute("search:" + query, () -> loadSearchContacts(query));
+    }
+
+    private List<ContactReportDto> loadSearchContacts(String query) {
         // Query the repository for all contacts where any of the following fields
         // contains the query string (ignoring case): firstName, lastName, email, or phoneNumber.
         List<Contact> contacts = contactRepository
@@ -152,53 +253,203 @@ public class ContactServiceImpl implements ContactService {
             throw new NotFoundException("No contact found matching query: " + query);
         }
 
-        // Map each Contact entity to a ContactReportDto using the builder pattern
-        // and collect the results into a list.
+        // Map each Contact entity to a ContactReportDto and collect the results into a list.
         return contacts.stream()
-                .map(contact -> ContactReportDto.builder()
-                        .firstName(contact.getFirstName())
-                        .lastName(contact.getLastName())
-                        .phoneNumber(contact.getPhoneNumber())
-                        .email(contact.getEmail())
-                        .contactImage(contact.getContactImage())
-                        .address(contact.getAddress())
-                        .groupName(contact.getGroupName())
-                        .build())
-                .collect(Collectors.toList());
+                .map(this::mapToReportDto)
+                .toList();
     }
 
 
     @Override
     public List<ContactReportDto> getContactByGroup(Group group) {
+        return contactReadCoalescer.execute("group:" + group, () -> loadContactByGroup(group));
+    }
+
+    private List<ContactReportDto> loadContactByGroup(Group group) {
         // Define sorting: first by firstName then by lastName (alphabetical order)
         Sort sort = Sort.by(Sort.Direction.ASC, "firstName", "lastName");
 
-        // Retrieve contacts filtered by group using the repository method
-        List<Contact> contacts = contactRepository.findByGroupName(group, sort);
+        // Retrieve the members of the group, not only the contacts whose primary group it is
+        List<Contact> contacts = contactRepository.findByGroupMembership(group.name(), sort);
 
-        // Map each Contact to a ContactReportDto using the builder pattern
+        // Map each Contact to a ContactReportDto
         return contacts.stream()
-                .map(contact -> ContactReportDto.builder()
-                        .firstName(contact.getFirstName())
-                        .lastName(contact.getLastName())
-                        .phoneNumber(contact.getPhoneNumber())
-                        .email(contact.getEmail())
-                        .contactImage(contact.getContactImage())
-                        .address(contact.getAddress())
-                        .groupName(contact.getGroupName())
-                        .build())
-                .collect(Collectors.toList());
+                .map(this::mapToReportDto)
+                .toList();
+    }
+
+    /*
+     * The streaming reads are not coalesced: each caller gets its own cursor, and only the row
+     * being written is held in memory.
+     */
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllContacts(Consumer<ContactReportDto> consumer) {
+        stream(contactRepository.streamAll(Sort.by(Sort.Direction.ASC, "firstName", "lastName")), consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamContactsByGroup(Group group, Consumer<ContactReportDto> consumer) {
+        stream(contactRepository.streamByGroupMembership(group.name(), Sort.by(Sort.Direction.ASC, "firstName", "lastName")), consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamSearchContacts(String query, Consumer<ContactReportDto> consumer) {
+        stream(contactRepository
+                .streamByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCaseOrEmailContainingIgnoreCaseOrPhoneNumberContainingIgnoreCase(
+                        query, query, query, query), consumer);
+    }
+
+    private void stream(Stream<Contact> contacts, Consumer<ContactReportDto> consumer) {
+        try (contacts) {
+            contacts.forEach(contact -> {
+                ContactReportDto dto = mapToReportDto(contact);
+                // Keep the persistence context from growing with the result.
+                entityManager.detach(contact);
+                consumer.accept(dto);
+            });
+        }
+    }
+
+    @Override
+    public ContactPageResponse queryContacts(ContactQueryRequest queryRequest) {
+        ContactSortField sortField = Optional.ofNullable(queryRequest.getSortBy()).orElse(ContactSortField.NAME);
+        Sort.Direction direction = Optional.ofNullable(queryRequest.getDirection()).orElse(Sort.Direction.ASC);
+        int limit = Optional.ofNullable(queryRequest.getLimit()).orElse(DEFAULT_QUERY_LIMIT);
+        if (limit < 1 || limit > MAX_QUERY_LIMIT) {
+            throw new InvalidFormatException("Limit must be between 1 and " + MAX_QUERY_LIMIT + ".");
+        }
+
+        if (queryRequest.getHasImage() != null && !hasIndexedFilter(queryRequest)) {
+            // hasImage is not indexed, so on its own it could read every live contact for one page.
+            throw new InvalidFormatException("hasImage must be combined with another filter.");
+        }
+
+        // Group names are resolved like the membership query does; nobody is in a group that does not exist.
+        List<Long> groupIds = null;
+        if (queryRequest.getGroups() != null && !queryRequest.getGroups().isEmpty()) {
+            groupIds = contactGroupService.groupIdsOf(queryRequest.getGroups());
+            if (groupIds.isEmpty()) {
+                return ContactPageResponse.builder().contacts(List.of()).build();
+            }
+        }
+
+        // Combine the requested filters, then continue after the cursor position if one was supplied.
+        Specification<Contact> specification = ContactSpecifications.matching(queryRequest, groupIds);
+        if (queryRequest.getCursor() != null) {
+            ContactCursor cursor = ContactCursor.decode(queryRequest.getCursor(), sortField);
+            specification = specification.and(
+                    ContactSpecifications.after(sortField, direction, cursor.getSortValues(), cursor.getId()));
+        }
+
+        // Fetch one row more than requested to learn whether another page exists, without a count query.
+        Sort sort = ContactSpecifications.sortOf(sortField, direction, !hasIndexedFilter(queryRequest));
+        List<Contact> contacts = contactRepository.findBy(specification, query -> query.sortBy(sort).limit(limit + 1).all());
+
+        boolean hasMore = contacts.size() > limit;
+        List<Contact> page = hasMore ? contacts.subList(0, limit) : contacts;
+
+        return ContactPageResponse.builder()
+                .contacts(page.stream().map(this::mapToReportDto).collect(Collectors.toList()))
+                .nextCursor(hasMore ? ContactCursor.encode(sortField, page.get(page.size() - 1)) : null)
+                .build();
+    }
+
+    private static boolean hasIndexedFilter(ContactQueryRequest queryRequest) {
+        return (queryRequest.getGroups() != null && !queryRequest.getGroups().isEmpty())
+                || StringUtils.hasText(queryRequest.getNamePrefix())
+                || StringUtils.hasText(queryRequest.getEmailDomain())
+                || queryRequest.getCreatedFrom() != null || queryRequest.getCreatedTo() != null
+                || queryRequest.getUpdatedFrom() != null || queryRequest.getUpdatedTo() != null;
     }
 
     @Override
+    public ContactPageResponse queryContactsByGroups(ContactGroupQueryRequest queryRequest) {
+        int limit = Optional.ofNullable(queryRequest.getLimit()).orElse(DEFAULT_QUERY_LIMIT);
+        if (limit < 1 || limit > MAX_QUERY_LIMIT) {
+            throw new InvalidFormatException("Limit must be between 1 and " + MAX_QUERY_LIMIT + ".");
+        }
+        Long afterId = null;
+        if (queryRequest.getCursor() != null) {
+            try {
+                afterId = Long.parseLong(queryRequest.getCursor());
+            } catch (NumberFormatException e) {
+                throw new InvalidFormatException("Invalid cursor: " + queryRequest.getCursor());
+            }
+        }
+
+        // Membership is resolved with bitmap operations in memory, again with one id more than requested.
+        List<Long> ids = contactGroupService.selectContactIds(
+                Optional.ofNullable(queryRequest.getAllOf()).orElse(Set.of()),
+                Optional.ofNullable(queryRequest.getAnyOf()).orElse(Set.of()),
+                Optional.ofNullable(queryRequest.getNoneOf()).orElse(Set.of()),
+                afterId, limit + 1);
+        boolean hasMore = ids.size() > limit;
+        List<Long> pageIds = hasMore ? ids.subList(0, limit) : ids;
+
+        // One SELECT by id for the whole page; the rows come back in any order, so restore id order.
+        Map<Long, Contact> contacts = contactRepository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(Contact::getId, Function.identity()));
+
+        return ContactPageResponse.builder()
+                .contacts(pageIds.stream()
+                        .map(contacts::get)
+                        .filter(Objects::nonNull)
+                        .map(this::mapToReportDto)
+                        .collect(Collectors.toList()))
+                .nextCursor(hasMore ? String.valueOf(pageIds.get(pageIds.size() - 1)) : null)
+                .build();
+    }
+
+    @Override
+    @Transactional
     public void saveAllContacts(List<Contact> contacts) {
-        // Save all contacts using Spring Data JPA's saveAll method.
-        contactRepository.saveAll(contacts);
+        // Insert all contacts with batched JDBC statements rather than one INSERT per contact.
+        contactRepository.insertAll(contacts);
+
+        Map<Long, Set<String>> groupsByContact = new LinkedHashMap<>();
+        contacts.forEach(contact -> groupsByContact.put(contact.getId(),
+                withPrimaryGroup(contact.getGroupName(), contact.getGroups())));
+        contactGroupService.addMembers(groupsByContact);
+        AfterCommit.run(contactReadCoalescer::invalidate);
     }
 
     @Override
     public List<Contact> getAllContactsEntity() {
         // Retrieve all contacts from the repository.
-        return contactRepository.findAll();
+        List<Contact> contacts = contactRepository.findAll();
+        // Their groups come from the in-memory group index, not from another query.
+        contacts.forEach(contact -> contact.setGroups(new LinkedHashSet<>(contactGroupService.groupNamesOf(contact.getId()))));
+        return contacts;
+    }
+
+    // The primary group is always one of the contact's groups.
+    private static Set<String> withPrimaryGroup(Group primary, Collection<String> groups) {
+        Set<String> names = new LinkedHashSet<>();
+        if (primary != null) {
+            names.add(primary.name());
+        }
+        if (groups != null) {
+            names.addAll(groups);
+        }
+        return names;
+    }
+
+    private ContactReportDto mapToReportDto(Contact contact) {
+        return ContactReportDto.builder()
+                .id(contact.getId())
+                .version(contact.getVersion())
+                .firstName(contact.getFirstName())
+                .lastName(contact.getLastName())
+                .phoneNumber(contact.getPhoneNumber())
+                .email(contact.getEmail())
+                .contactImage(contact.getContactImage())
+                .address(contact.getAddress())
+                .groupName(contact.getGroupName())
+                .groups(contactGroupService.groupNamesOf(contact.getId()))
+                .build();
     }
 }
@@ -0,0 +1,569 @@
+package com.mathias.phonenest.service.Impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mathias.phonenest.domain.entities.Contact;
+import com.mathias.phonenest.exceptions.AlreadyExistException;
+import com.mathias.phonenest.exceptions.InvalidFormatException;
+import com.mathias.phonenest.exceptions.NotFoundException;
+import com.mathias.phonenest.payload.response.ContactReportDto;
+import com.mathias.phonenest.payload.response.SnapshotManifest;
+import com.mathias.phonenest.service.ContactGroupService;
+import com.mathias.phonenest.service.ContactSnapshotService;
+import com.mathias.phonenest.util.ContactWriteGate;
+import com.mathias.phonenest.util.RequestCoalescer;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Partitioned, parallel copy of contact_tbl, with the contacts' groups and memberships, to local
+ * disk and back. Each file is read over its own connection, so a snapshot of tables that are being
+ * written to is consistent per file only; take it from a quiet database or a replica for an exact copy.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ContactSnapshotServiceImpl implements ContactSnapshotService {
+
+    // Raw contact_tbl columns, soft-deleted rows included, so a restore is an exact clone.
+    private static final List<String> COLUMNS = List.of("id", "first_name", "last_name", "phone_number", "email",
+            "email_domain", "contact_image", "address", "group_name", "created_at", "updated_at", "deleted_at", "version");
+    private static final Set<String> TIMESTAMP_COLUMNS = Set.of("created_at", "updated_at", "deleted_at");
+    private static final Set<String> NUMERIC_COLUMNS = Set.of("id", "version");
+
+    private static final CSVFormat SNAPSHOT_FORMAT = CSVFormat.DEFAULT.builder().setNullString("\\N").build();
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String MANIFEST_FILE = "manifest.json";
+    private static final String GROUPS_FILE = "groups.csv.gz";
+    private static final String MEMBERSHIPS_FILE = "memberships.csv.gz";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String SELECT_GROUPS = "SELECT name FROM contact_group_tbl ORDER BY name";
+    // Memberships are stored by group name, so they can be mapped onto the group ids of the target database.
+    private static final String SELECT_MEMBERSHIPS = "SELECT m.contact_id, g.name FROM contact_group_member_tbl m "
+            + "JOIN contact_group_tbl g ON g.id = m.group_id JOIN contact_tbl c ON c.id = m.contact_id "
+            + "ORDER BY m.contact_id, g.name";
+    private static final String INSERT_GROUP = "INSERT INTO contact_group_tbl (name, created_at, updated_at, version) "
+            + "SELECT ?, ?, ?, 0 FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM contact_group_tbl WHERE name = ?)";
+    // The table may still hold memberships whose contact is gone, e.g. of contacts archived before memberships moved with them.
+    private static final String INSERT_MEMBERSHIP = "INSERT INTO contact_group_member_tbl (contact_id, group_id) "
+            + "SELECT ?, ? FROM DUAL WHERE NOT EXISTS "
+            + "(SELECT 1 FROM contact_group_member_tbl WHERE contact_id = ? AND group_id = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final RequestCoalescer<String, List<ContactReportDto>> contactReadCoalescer;
+    private final ContactGroupService contactGroupService;
+    private final TransactionTemplate transactionTemplate;
+    private final ContactWriteGate contactWriteGate;
+
+    @Value("${phonenest.snapshot.directory:snapshots}")
+    private String snapshotDirectory;
+
+    // 0 means one thread per available core; never more than half the connection pool.
+    @Value("${phonenest.snapshot.parallelism:0}")
+    private int parallelism;
+
+    // More partitions than threads keeps every thread busy when ids are unevenly distributed.
+    @Value("${phonenest.snapshot.partitions-per-thread:4}")
+    private int partitionsPerThread;
+
+    @Value("${phonenest.snapshot.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${phonenest.snapshot.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${phonenest.snapshot.defer-indexes:true}")
+    private boolean deferIndexes;
+
+    // How long a restore waits for the contact writes in flight; new ones are turned away meanwhile.
+    @Value("${phonenest.snapshot.restore-wait:30s}")
+    private Duration restoreWait;
+
+    @Value("${phonenest.admission.bulk.max-concurrent:4}")
+    private int bulkMaxConcurrent;
+
+    @Override
+    public SnapshotManifest createSnapshot() {
+        long started = System.nanoTime();
+        LocalDateTime createdAt = LocalDateTime.now();
+        String name = "snapshot-" + createdAt.format(NAME_FORMAT);
+        Path directory = Paths.get(snapshotDirectory, name);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create snapshot directory " + directory, e);
+        }
+
+        // Split the id space into ranges and dump each range to its own file in parallel.
+        Map<String, Object> bounds = jdbcTemplate.queryForMap("SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM contact_tbl");
+        List<long[]> ranges = bounds.get("min_id") == null
+                ? List.of()
+                : splitIdRange(((Number) bounds.get("min_id")).longValue(), ((Number) bounds.get("max_id")).longValue(),
+                threads() * partitionsPerThread);
+
+        List<Callable<SnapshotManifest.Partition>> tasks = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            String file = String.format("part-%05d.csv.gz", i);
+            long[] range = ranges.get(i);
+            tasks.add(() -> writePartition(directory.resolve(file), range[0], range[1]));
+        }
+        tasks.add(() -> writeFile(directory.resolve(GROUPS_FILE), connection -> connection.prepareStatement(SELECT_GROUPS),
+                ContactSnapshotServiceImpl::readStrings));
+        tasks.add(() -> writeFile(directory.resolve(MEMBERSHIPS_FILE), connection -> prepareFetching(connection, SELECT_MEMBERSHIPS),
+                ContactSnapshotServiceImpl::readStrings));
+        List<SnapshotManifest.Partition> files = runInParallel(tasks);
+        List<SnapshotManifest.Partition> partitions = files.subList(0, ranges.size());
+
+        SnapshotManifest manifest = SnapshotManifest.builder()
+                .name(name)
+                .createdAt(createdAt)
+                .columns(COLUMNS)
+                .rowCount(partitions.stream().mapToLong(SnapshotManifest.Partition::getRowCount).sum())
+                .durationMillis((System.nanoTime() - started) / 1_000_000)
+                .partitions(List.copyOf(partitions))
+                .groups(files.get(ranges.size()))
+                .memberships(files.get(ranges.size() + 1))
+                .build();
+        try {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(directory.resolve(MANIFEST_FILE).toFile(), manifest);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write snapshot manifest", e);
+        }
+
+        log.info("Snapshot {} written: {} rows in {} partitions, {} ms",
+                name, manifest.getRowCount(), partitions.size(), manifest.getDurationMillis());
+        return manifest;
+    }
+
+    @Override
+    public SnapshotManifest restoreSnapshot(String name) {
+        long started = System.nanoTime();
+        if (name == null || !SNAPSHOT_NAME.matcher(name).matches()) {
+            throw new InvalidFormatException("Invalid snapshot name: " + name);
+        }
+        Path directory = Paths.get(snapshotDirectory, name);
+        SnapshotManifest manifest = readManifest(directory);
+
+        // Only columns this version knows about may end up in the INSERT statement.
+        if (!COLUMNS.containsAll(manifest.getColumns()) || !manifest.getColumns().contains("id")) {
+            throw new InvalidFormatException("Snapshot " + name + " has unsupported columns: " + manifest.getColumns());
+        }
+
+        // Refuse to start loading anything unless every file is intact and inside the snapshot directory.
+        List<SnapshotManifest.Partition> files = new ArrayList<>(manifest.getPartitions());
+        if (manifest.getMemberships() != null) {
+            if (manifest.getGroups() == null) {
+                throw new InvalidFormatException("Snapshot " + name + " has memberships but no groups.");
+            }
+            files.add(manifest.getGroups());
+            files.add(manifest.getMemberships());
+        }
+        runInParallel(files.stream()
+                .<Callable<Void>>map(file -> () -> {
+                    verifyChecksum(dataFile(directory, file), file.getSha256());
+                    return null;
+                })
+                .toList());
+
+        // No contact write may start, or still be running, between the check below and the end of the load.
+        closeWriteGate();
+        try {
+            loadSnapshot(name, directory, manifest);
+        } finally {
+            contactWriteGate.open();
+        }
+
+        log.info("Snapshot {} restored: {} rows in {} partitions, {} ms", name, manifest.getRowCount(),
+                manifest.getPartitions().size(), (System.nanoTime() - started) / 1_000_000);
+        return manifest;
+    }
+
+    private void loadSnapshot(String name, Path directory, SnapshotManifest manifest) {
+        // Archived contacts keep their ids, which the snapshot's contacts may have as well.
+        if (!jdbcTemplate.queryForList("SELECT id FROM contact_tbl LIMIT 1", Long.class).isEmpty()
+                || !jdbcTemplate.queryForList("SELECT id FROM contact_archive_tbl LIMIT 1", Long.class).isEmpty()) {
+            throw new AlreadyExistException("contact_tbl and contact_archive_tbl must be empty to restore a snapshot.");
+        }
+
+        List<Index> dropped = new ArrayList<>();
+        try {
+            // Building secondary indexes once at the end is much cheaper than maintaining them per row.
+            if (deferIndexes) {
+                for (Index index : Contact.class.getAnnotation(Table.class).indexes()) {
+                    if (indexExists(index)) {
+                        dropIndex(index);
+                        dropped.add(index);
+                    }
+                }
+            }
+            String insert = "INSERT INTO contact_tbl (" + String.join(", ", manifest.getColumns()) + ") VALUES ("
+                    + String.join(", ", Collections.nCopies(manifest.getColumns().size(), "?")) + ")";
+            runInParallel(manifest.getPartitions().stream()
+                    .<Callable<Long>>map(partition -> () -> loadFile(dataFile(directory, partition), insert,
+                            csvRecord -> toParameters(csvRecord, manifest.getColumns())))
+                    .toList());
+            createIndexes(dropped);
+
+            // Older snapshots have no group files; their contacts keep the memberships still in the table.
+            if (manifest.getMemberships() != null) {
+                transactionTemplate.executeWithoutResult(status -> loadGroups(directory, manifest));
+            }
+        } catch (RuntimeException e) {
+            // Remove what was loaded rather than leave a partial copy, so the restore can simply be run again.
+            log.error("Restoring snapshot {} failed; removing the rows it loaded", name, e);
+            try {
+                for (SnapshotManifest.Partition partition : manifest.getPartitions()) {
+                    jdbcTemplate.update("DELETE FROM contact_tbl WHERE id BETWEEN ? AND ?",
+                            partition.getFromId(), partition.getToId());
+                }
+                createIndexes(dropped);
+            } catch (RuntimeException cleanupFailure) {
+                e.addSuppressed(cleanupFailure);
+            }
+            throw e;
+        }
+
+        contactGroupService.rebuildIndex();
+        contactReadCoalescer.invalidate();
+    }
+
+    private void closeWriteGate() {
+        try {
+            if (!contactWriteGate.tryClose(restoreWait)) {
+                throw new TaskRejectedException("Contact writes did not finish within " + restoreWait
+                        + "; try the restore again later.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Snapshot restore interrupted", e);
+        }
+    }
+
+    /**
+     * Create the groups of the snapshot that do not exist yet, then add the memberships by group name.
+     */
+    private void loadGroups(Path directory, SnapshotManifest manifest) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            loadFile(dataFile(directory, manifest.getGroups()), INSERT_GROUP,
+                    csvRecord -> new Object[]{csvRecord.get(0), now, now, csvRecord.get(0)});
+
+            Map<String, Long> groupIds = new HashMap<>();
+            jdbcTemplate.query("SELECT id, name FROM contact_group_tbl",
+                    (RowCallbackHandler) resultSet -> groupIds.put(resultSet.getString(2), resultSet.getLong(1)));
+            loadFile(dataFile(directory, manifest.getMemberships()), INSERT_MEMBERSHIP, csvRecord -> {
+                Long contactId = Long.valueOf(csvRecord.get(0));
+                Long groupId = groupIds.get(csvRecord.get(1));
+                if (groupId == null) {
+                    throw new InvalidFormatException("Snapshot membership refers to unknown group " + csvRecord.get(1));
+                }
+                return new Object[]{contactId, groupId, contactId, groupId};
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read snapshot groups", e);
+        }
+    }
+
+    private SnapshotManifest.Partition writePartition(Path file, long fromId, long toId) throws IOException {
+        SnapshotManifest.Partition partition = writeFile(file, connection -> {
+            PreparedStatement statement = prepareFetching(connection,
+                    "SELECT " + String.join(", ", COLUMNS) + " FROM contact_tbl WHERE id BETWEEN ? AND ? ORDER BY id");
+            statement.setLong(1, fromId);
+            statement.setLong(2, toId);
+            return statement;
+        }, this::readRow);
+        partition.setFromId(fromId);
+        partition.setToId(toId);
+        return partition;
+    }
+
+    private SnapshotManifest.Partition writeFile(Path file, PreparedStatementCreator query, RowReader rowReader)
+            throws IOException {
+        MessageDigest digest = sha256();
+        long[] rowCount = {0};
+
+        // The checksum is taken over the compressed bytes exactly as they land on disk.
+        try (OutputStream out = new DigestOutputStream(Files.newOutputStream(file), digest);
+             Writer writer = new OutputStreamWriter(new GZIPOutputStream(out, BUFFER_SIZE), StandardCharsets.UTF_8);
+             CSVPrinter csvPrinter = new CSVPrinter(writer, SNAPSHOT_FORMAT)) {
+            jdbcTemplate.query(query, (RowCallbackHandler) resultSet -> {
+                try {
+                    csvPrinter.printRecord(rowReader.read(resultSet));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rowCount[0]++;
+            });
+        }
+
+        return SnapshotManifest.Partition.builder()
+                .file(file.getFileName().toString())
+                .rowCount(rowCount[0])
+                .sha256(HexFormat.of().formatHex(digest.digest()))
+                .build();
+    }
+
+    private PreparedStatement prepareFetching(Connection connection, String sql) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        statement.setFetchSize(fetchSize);
+        return statement;
+    }
+
+    private long loadFile(Path file, String insert, Function<CSVRecord, Object[]> toParameters) throws IOException {
+        long rowCount = 0;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE);
+             Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+             CSVParser csvParser = new CSVParser(reader, SNAPSHOT_FORMAT)) {
+            List<Object[]> batch = new ArrayList<>(batchSize);
+            for (CSVRecord csvRecord : csvParser) {
+                batch.add(toParameters.apply(csvRecord));
+                if (batch.size() == batchSize) {
+                    jdbcTemplate.batchUpdate(insert, batch);
+                    rowCount += batch.size();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate(insert, batch);
+                rowCount += batch.size();
+            }
+        }
+        return rowCount;
+    }
+
+    private List<Object> readRow(ResultSet resultSet) throws SQLException {
+        List<Object> values = new ArrayList<>(COLUMNS.size());
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            if (TIMESTAMP_COLUMNS.contains(COLUMNS.get(i))) {
+                Timestamp timestamp = resultSet.getTimestamp(i + 1);
+                values.add(timestamp == null ? null : timestamp.toLocalDateTime());
+            } else {
+                values.add(resultSet.getString(i + 1));
+            }
+        }
+        return values;
+    }
+
+    private static List<Object> readStrings(ResultSet resultSet) throws SQLException {
+        int columnCount = resultSet.getMetaData().getColumnCount();
+        List<Object> values = new ArrayList<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            values.add(resultSet.getString(i));
+        }
+        return values;
+    }
+
+    private Object[] toParameters(CSVRecord csvRecord, List<String> columns) {
+        Object[] parameters = new Object[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            String value = csvRecord.get(i);
+            if (value == null) {
+                parameters[i] = null;
+            } else if (NUMERIC_COLUMNS.contains(columns.get(i))) {
+                parameters[i] = Long.valueOf(value);
+            } else if (TIMESTAMP_COLUMNS.contains(columns.get(i))) {
+                parameters[i] = Timestamp.valueOf(LocalDateTime.parse(value));
+            } else {
+                parameters[i] = value;
+            }
+        }
+        return parameters;
+    }
+
+    private SnapshotManifest readManifest(Path directory) {
+        Path manifestFile = directory.resolve(MANIFEST_FILE);
+        if (Files.notExists(manifestFile)) {
+            throw new NotFoundException("Snapshot " + directory.getFileName() + " not found");
+        }
+        try {
+            return objectMapper.readValue(manifestFile.toFile(), SnapshotManifest.class);
+        } catch (IOException e) {
+            throw new InvalidFormatException("Unreadable snapshot manifest: " + e.getMessage());
+        }
+    }
+
+    // The file names come from manifest.json, so they must not point outside the snapshot directory.
+    private static Path dataFile(Path directory, SnapshotManifest.Partition partition) {
+        String name = partition.getFile();
+        Path file = name == null ? null : directory.resolve(name).normalize();
+        if (file == null || !directory.normalize().equals(file.getParent())
+                || !file.getFileName().toString().equals(name)) {
+            throw new InvalidFormatException("Invalid snapshot file name: " + name);
+        }
+        return file;
+    }
+
+    private void verifyChecksum(Path file, String expected) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        if (!HexFormat.of().formatHex(digest.digest()).equalsIgnoreCase(expected)) {
+            throw new InvalidFormatException("Checksum mismatch for snapshot file " + file.getFileName());
+        }
+    }
+
+    private boolean indexExists(Index index) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (ResultSet indexes = connection.getMetaData()
+                    .getIndexInfo(connection.getCatalog(), null, "contact_tbl", false, false)) {
+                while (indexes.next()) {
+                    if (index.name().equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }));
+    }
+
+    private void dropIndex(Index index) {
+        jdbcTemplate.execute("DROP INDEX " + index.name() + " ON contact_tbl");
+    }
+
+    // Removes each index from the list once it exists again, so a retry only creates the rest.
+    private void createIndexes(List<Index> indexes) {
+        for (Iterator<Index> iterator = indexes.iterator(); iterator.hasNext(); ) {
+            Index index = iterator.next();
+            jdbcTemplate.execute("CREATE INDEX " + index.name() + " ON contact_tbl (" + index.columnList() + ")");
+            iterator.remove();
+        }
+    }
+
+    private static List<long[]> splitIdRange(long minId, long maxId, int partitionCount) {
+        long span = maxId - minId + 1;
+        long size = Math.max(1, (span + partitionCount - 1) / partitionCount);
+        List<long[]> ranges = new ArrayList<>();
+        for (long from = minId; from <= maxId; from += size) {
+            ranges.add(new long[]{from, Math.min(from + size - 1, maxId)});
+        }
+        return ranges;
+    }
+
+    private <T> List<T> runInParallel(List<Callable<T>> tasks) {
+        if (tasks.isEmpty()) {
+            return List.of();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads(), tasks.size()));
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Snapshot operation interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Every thread holds a pooled connection, so at most half the pool is used and requests keep the
+     * rest. Snapshot and restore hold the whole bulk admission lane, and use no more connections than
+     * that lane admits.
+     */
+    private int threads() {
+        int requested = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(Math.min(requested, bulkMaxConcurrent), connectionPoolSize() / 2));
+    }
+
+    private int connectionPoolSize() {
+        DataSource dataSource = jdbcTemplate.getDataSource();
+        try {
+            if (dataSource != null && dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            log.debug("Could not inspect the connection pool", e);
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    @FunctionalInterface
+    private interface RowReader {
+        List<Object> read(ResultSet resultSet) throws SQLException;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.mathias.phonenest.util;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One class of traffic with its own concurrency limit and per-client rate limit. Requests in
+ * different lanes never wait for each other, so a lane's limit is also the most pooled
+ * connections and request threads its requests can hold at once.
+ */
+public class AdmissionLane {
+
+    // Idle client buckets are only swept once the map grows past this size.
+    private static final int PURGE_THRESHOLD = 4096;
+
+    private final String name;
+    private final int maxConcurrent;
+    private final long maxWaitNanos;
+    private final Duration retryAfter;
+    private final double ratePerSecond;
+    private final int burst;
+
+    private final Semaphore permits;
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private volatile int purgeAtSize = PURGE_THRESHOLD;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejectedBusy = new LongAdder();
+    private final LongAdder rejectedRate = new LongAdder();
+
+    /**
+     * @param name          used in metrics and log messages.
+     * @param maxConcurrent how many requests of this lane may run at once.
+     * @param maxWait       how long a request may wait for a free slot before it is shed.
+     * @param retryAfter    what shed requests are told to wait before trying again.
+     * @param ratePerSecond sustained requests per second per client; zero or less disables rate limiting.
+     * @param burst         requests a client may send at once on top of the sustained rate.
+     */
+    public AdmissionLane(String name, int maxConcurrent, Duration maxWait, Duration retryAfter,
+                         double ratePerSecond, int burst) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("Lane " + name + " must admit at least one request at a time");
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.retryAfter = retryAfter;
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * Charge one request to the client's rate limit.
+     *
+     * @param client identifies the caller, e.g. its address.
+     * @return 0 if the request is within the limit, otherwise how many nanoseconds the client should wait.
+     */
+    public long tryConsumeRate(String client) {
+        if (ratePerSecond <= 0) {
+            return 0;
+        }
+        if (buckets.size() >= purgeAtSize) {
+            purgeIdleBuckets();
+        }
+        long waitNanos = buckets.computeIfAbsent(client, key -> new TokenBucket(ratePerSecond, burst)).tryConsume();
+        if (waitNanos > 0) {
+            rejectedRate.increment();
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Give back the rate token of a request that was charged but then not admitted.
+     *
+     * @param client the same client that was passed to {@link #tryConsumeRate(String)}.
+     */
+    public void refundRate(String client) {
+        if (ratePerSecond <= 0) {
+            return;
+        }
+        TokenBucket bucket = buckets.get(client);
+        if (bucket != null) {
+            bucket.refund();
+        }
+    }
+
+    /**
+     * Take slots in this lane, waiting at most the lane's max wait.
+     *
+     * @param count how many slots the request needs; at most {@link #getMaxConcurrent()}.
+     * @return true if the slots were taken and must be given back with {@link #release(int)}.
+     */
+    public boolean tryAcquire(int count) {
+        boolean acquired;
+        try {
+            acquired = maxWaitNanos > 0
+                    ? permits.tryAcquire(count, maxWaitNanos, TimeUnit.NANOSECONDS)
+                    : permits.tryAcquire(count);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (acquired) {
+            admitted.increment();
+        } else {
+            rejectedBusy.increment();
+        }
+        return acquired;
+    }
+
+    public void release(int count) {
+        permits.release(count);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public int getInFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    public long getRejectedBusyCount() {
+        return rejectedBusy.sum();
+    }
+
+    public long getRejectedRateCount() {
+        return rejectedRate.sum();
+    }
+
+    // A full bucket is the same as a new one, so dropping it loses nothing.
+    private synchronized void purgeIdleBuckets() {
+        if (buckets.size() < purgeAtSize) {
+            return;
+        }
+        buckets.values().removeIf(TokenBucket::isFull);
+        // With many clients active at once, do not sweep again on every request.
+        purgeAtSize = Math.max(PURGE_THRESHOLD, buckets.size() * 2);
+    }
+}
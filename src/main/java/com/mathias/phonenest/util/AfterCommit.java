@@ -0,0 +1,30 @@
+package com.mathias.phonenest.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /**
+     * Run the action once the current transaction has committed, or right away if there is none.
+     * Nothing runs if the transaction rolls back.
+     *
+     * @param action e.g. dropping cached reads, which must not happen before other transactions can
+     *               see the write: a read started in between would cache the old data again.
+     */
+    public static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
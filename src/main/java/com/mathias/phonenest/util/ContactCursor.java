@@ -0,0 +1,105 @@
+package com.mathias.phonenest.util;
+
+import com.mathias.phonenest.domain.entities.Contact;
+import com.mathias.phonenest.domain.enums.ContactSortField;
+import com.mathias.phonenest.exceptions.InvalidFormatException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Opaque keyset-paging cursor: the sort field, the sort values and the id of the last
+ * contact on a page, each Base64url-encoded and joined with '.'. A null sort value is
+ * written as '~', which never occurs in Base64url.
+ */
+public final class ContactCursor {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final String NULL_PART = "~";
+
+    private final List<Object> sortValues;
+    private final Long id;
+
+    private ContactCursor(List<Object> sortValues, Long id) {
+        this.sortValues = sortValues;
+        this.id = id;
+    }
+
+    public List<Object> getSortValues() {
+        return sortValues;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Build the cursor pointing just after the given contact.
+     *
+     * @param sortField the sort order of the page.
+     * @param contact   the last contact on the page.
+     * @return the encoded cursor.
+     */
+    public static String encode(ContactSortField sortField, Contact contact) {
+        List<String> parts = new ArrayList<>();
+        parts.add(sortField.name());
+        switch (sortField) {
+            case NAME -> {
+                parts.add(contact.getFirstName());
+                parts.add(contact.getLastName());
+            }
+            case CREATED_AT -> parts.add(Objects.toString(contact.getCreatedAt(), null));
+            case UPDATED_AT -> parts.add(Objects.toString(contact.getUpdatedAt(), null));
+        }
+        parts.add(contact.getId().toString());
+
+        List<String> encoded = new ArrayList<>();
+        for (String part : parts) {
+            encoded.add(part == null ? NULL_PART : ENCODER.encodeToString(part.getBytes(StandardCharsets.UTF_8)));
+        }
+        return String.join(".", encoded);
+    }
+
+    /**
+     * Decode a cursor previously returned for the same sort field.
+     *
+     * @param cursor    the encoded cursor.
+     * @param sortField the sort order of the current query.
+     * @return the decoded position.
+     * @throws InvalidFormatException if the cursor is malformed or was issued for another sort field.
+     */
+    public static ContactCursor decode(String cursor, ContactSortField sortField) {
+        try {
+            String[] encoded = cursor.split("\\.");
+            int expectedParts = sortField.getProperties().size() + 2;
+            if (encoded.length != expectedParts) {
+                throw new InvalidFormatException("Invalid cursor.");
+            }
+            List<String> parts = new ArrayList<>();
+            for (String part : encoded) {
+                parts.add(NULL_PART.equals(part) ? null : new String(DECODER.decode(part), StandardCharsets.UTF_8));
+            }
+            if (!sortField.name().equals(parts.get(0))) {
+                throw new InvalidFormatException("Cursor was issued for a different sort order.");
+            }
+
+            List<Object> sortValues = new ArrayList<>();
+            for (String value : parts.subList(1, parts.size() - 1)) {
+                sortValues.add(value == null || sortField == ContactSortField.NAME ? value : LocalDateTime.parse(value));
+            }
+            String id = parts.get(parts.size() - 1);
+            if (id == null) {
+                throw new InvalidFormatException("Invalid cursor.");
+            }
+            return new ContactCursor(sortValues, Long.valueOf(id));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidFormatException("Invalid cursor.");
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.mathias.phonenest.util;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets any number of contact writes run side by side, or a snapshot restore run with none of them.
+ * Writes never wait: while a restore holds the gate, or waits for the writes in flight to finish,
+ * new writes are turned away. Permits are not tied to a thread, so a write may end on another one.
+ */
+public class ContactWriteGate {
+
+    private static final int ALL = Integer.MAX_VALUE;
+
+    // Fair, so a waiting restore is not overtaken by a steady stream of writes.
+    private final Semaphore permits = new Semaphore(ALL, true);
+
+    /**
+     * @return true if the write may run; it must then call {@link #exitWrite()} when done.
+     */
+    public boolean tryEnterWrite() {
+        try {
+            // Unlike tryAcquire(), the timed variant honours the fair ordering.
+            return permits.tryAcquire(0, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void exitWrite() {
+        permits.release();
+    }
+
+    /**
+     * Turn away new writes and wait for those in flight to finish.
+     *
+     * @param maxWait how long to wait for the writes in flight.
+     * @return true if the gate is now closed; it must then be reopened with {@link #open()}.
+     */
+    public boolean tryClose(Duration maxWait) throws InterruptedException {
+        return permits.tryAcquire(ALL, maxWait.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public void open() {
+        permits.release(ALL);
+    }
+}
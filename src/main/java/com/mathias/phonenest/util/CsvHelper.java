@@ -10,12 +10,18 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 public class CsvHelper {
     // Define the CSV content type and header names.
     public static final String TYPE = "text/csv";
     static String[] HEADERs = {"firstName", "lastName", "email", "phoneNumber", "contactImage", "address", "groupName"};
+    // Separates several groups in the groupName column, e.g. "work;golf club".
+    public static final String GROUP_SEPARATOR = ";";
 
     /**
      * Check if the uploaded file is in CSV format.
@@ -31,6 +37,8 @@ public class CsvHelper {
      *
      * Expected CSV header (sample template):
      * firstName,lastName,email,phoneNumber,contactImage,address,groupName
+     * The groupName column may list several groups separated by ';'. The first of them that is
+     * FAMILY, FRIENDS or WORK becomes the contact's primary group.
      *
      * @param is the InputStream of the CSV file.
      * @return a List of Contact objects.
@@ -47,6 +55,7 @@ public class CsvHelper {
             Iterable<CSVRecord> csvRecords = csvParser.getRecords();
 
             for (CSVRecord csvRecord : csvRecords) {
+                Set<String> groups = splitGroups(csvRecord.get("groupName"));
                 // Build a Contact using the values from the CSV record.
                 Contact contact = Contact.builder()
                         .firstName(csvRecord.get("firstName"))
@@ -55,7 +64,8 @@ public class CsvHelper {
                         .phoneNumber(csvRecord.get("phoneNumber"))
                         .contactImage(csvRecord.get("contactImage"))
                         .address(csvRecord.get("address"))
-                        .groupName(Group.valueOf(csvRecord.get("groupName").toUpperCase()))
+                        .groupName(primaryGroupOf(groups))
+                        .groups(groups)
                         .build();
                 contacts.add(contact);
             }
@@ -84,7 +94,7 @@ public class CsvHelper {
                         contact.getPhoneNumber(),
                         contact.getContactImage(),
                         contact.getAddress(),
-                        contact.getGroupName().toString()
+                        joinGroups(contact)
                 );
                 csvPrinter.printRecord(data);
             }
@@ -94,4 +104,38 @@ public class CsvHelper {
             throw new RuntimeException("Failed to export data to CSV file: " + e.getMessage());
         }
     }
+
+    private static Set<String> splitGroups(String value) {
+        Set<String> groups = new LinkedHashSet<>();
+        if (value != null) {
+            Arrays.stream(value.split(GROUP_SEPARATOR))
+                    .map(String::trim)
+                    .filter(group -> !group.isEmpty())
+                    .forEach(groups::add);
+        }
+        return groups;
+    }
+
+    private static Group primaryGroupOf(Set<String> groups) {
+        for (String group : groups) {
+            for (Group candidate : Group.values()) {
+                if (candidate.name().equals(group.toUpperCase(Locale.ROOT))) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Primary group first, so that importing the file again keeps it as the primary group.
+    private static String joinGroups(Contact contact) {
+        Set<String> groups = new LinkedHashSet<>();
+        if (contact.getGroupName() != null) {
+            groups.add(contact.getGroupName().name());
+        }
+        if (contact.getGroups() != null) {
+            groups.addAll(contact.getGroups());
+        }
+        return String.join(GROUP_SEPARATOR, groups);
+    }
 }
@@ -0,0 +1,258 @@
+package com.mathias.phonenest.util;
+
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Contact ids per group as compressed bitmaps. There is no map from contact to groups: it would
+ * take an entry per contact, far more heap than the bitmaps. Looking up or replacing the groups of
+ * one contact therefore probes every group's bitmap, O(groups x log contacts); an address book has
+ * tens to hundreds of groups, which keeps that to microseconds.
+ */
+public class GroupBitmapIndex {
+
+    // Every live contact; the starting set for queries that only exclude groups.
+    private Roaring64NavigableMap contacts = new Roaring64NavigableMap();
+    // One compressed bitmap of contact ids per group id.
+    private Map<Long, Roaring64NavigableMap> members = new HashMap<>();
+
+    // Roaring bitmaps are not thread-safe: queries share the read lock, changes take the write lock.
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Changes made while a rebuild loads, replayed onto what it loaded; null while no rebuild runs.
+    private List<Change> changesDuringRebuild;
+
+    /**
+     * Replace the whole index, e.g. after loading it from the database. The given bitmaps are
+     * taken over, not copied.
+     *
+     * @param contacts the ids of all live contacts.
+     * @param members  the contact ids of every group, keyed by group id.
+     */
+    public void replace(Roaring64NavigableMap contacts, Map<Long, Roaring64NavigableMap> members) {
+        contacts.runOptimize();
+        members.values().forEach(Roaring64NavigableMap::runOptimize);
+        lock.writeLock().lock();
+        try {
+            this.contacts = contacts;
+            this.members = new HashMap<>(members);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the whole index with a fresh load, without losing the changes made while it loads:
+     * they are recorded and replayed onto the loaded bitmaps before those replace the current ones.
+     * Every change is also applied to the current bitmaps at once, so queries keep seeing it.
+     *
+     * @param loader fills the given bitmaps with the ids of all live contacts and the contact ids
+     *               of every group, keyed by group id. It runs without the lock held.
+     */
+    public synchronized void rebuild(BiConsumer<Roaring64NavigableMap, Map<Long, Roaring64NavigableMap>> loader) {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            Roaring64NavigableMap loadedContacts = new Roaring64NavigableMap();
+            Map<Long, Roaring64NavigableMap> loadedMembers = new HashMap<>();
+            loader.accept(loadedContacts, loadedMembers);
+            loadedContacts.runOptimize();
+            loadedMembers.values().forEach(Roaring64NavigableMap::runOptimize);
+
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild.forEach(change -> change.apply(loadedContacts, loadedMembers));
+                this.contacts = loadedContacts;
+                this.members = loadedMembers;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Add a contact to the index, or replace its memberships if it is already there. Visits every group.
+     *
+     * @param contactId the contact.
+     * @param groupIds  every group the contact belongs to.
+     */
+    public void put(long contactId, Collection<Long> groupIds) {
+        List<Long> groups = List.copyOf(groupIds);
+        apply((contacts, members) -> {
+            members.values().forEach(bitmap -> bitmap.removeLong(contactId));
+            contacts.addLong(contactId);
+            for (Long groupId : groups) {
+                members.computeIfAbsent(groupId, id -> new Roaring64NavigableMap()).addLong(contactId);
+            }
+        });
+    }
+
+    /**
+     * Add many new contacts at once.
+     *
+     * @param groupIdsByContact the groups of every new contact, keyed by contact id.
+     */
+    public void putAll(Map<Long, ? extends Collection<Long>> groupIdsByContact) {
+        Map<Long, List<Long>> groupsByContact = new HashMap<>();
+        groupIdsByContact.forEach((contactId, groupIds) -> groupsByContact.put(contactId, List.copyOf(groupIds)));
+        apply((contacts, members) -> groupsByContact.forEach((contactId, groupIds) -> {
+            contacts.addLong(contactId);
+            for (Long groupId : groupIds) {
+                members.computeIfAbsent(groupId, id -> new Roaring64NavigableMap()).addLong(contactId);
+            }
+        }));
+    }
+
+    /**
+     * Drop contacts and all their memberships from the index.
+     *
+     * @param contactIds the contacts that are no longer live.
+     */
+    public void removeAll(Collection<Long> contactIds) {
+        Roaring64NavigableMap removed = new Roaring64NavigableMap();
+        contactIds.forEach(removed::addLong);
+        apply((contacts, members) -> {
+            contacts.andNot(removed);
+            members.values().forEach(bitmap -> bitmap.andNot(removed));
+        });
+    }
+
+    /**
+     * Visits every group; see the class comment.
+     *
+     * @return the ids of the groups the contact belongs to, in no particular order.
+     */
+    public List<Long> groupsOf(long contactId) {
+        lock.readLock().lock();
+        try {
+            List<Long> groupIds = new ArrayList<>();
+            members.forEach((groupId, bitmap) -> {
+                if (bitmap.contains(contactId)) {
+                    groupIds.add(groupId);
+                }
+            });
+            return groupIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of live contacts in the group.
+     */
+    public long count(long groupId) {
+        lock.readLock().lock();
+        try {
+            Roaring64NavigableMap bitmap = members.get(groupId);
+            return bitmap == null ? 0 : bitmap.getLongCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the approximate heap used by the bitmaps, in bytes.
+     */
+    public long sizeInBytes() {
+        lock.readLock().lock();
+        try {
+            long size = contacts.getLongSizeInBytes();
+            for (Roaring64NavigableMap bitmap : members.values()) {
+                size += bitmap.getLongSizeInBytes();
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Select contacts by group membership with bitmap AND, OR and ANDNOT, then return one page of
+     * the matching ids in ascending order.
+     *
+     * @param allOf   the contact must be in every one of these groups; empty means no constraint.
+     * @param anyOf   the contact must be in at least one of these groups; empty means no constraint.
+     * @param noneOf  the contact must be in none of these groups.
+     * @param afterId only ids greater than this are returned; null starts at the first match.
+     * @param limit   the maximum number of ids to return.
+     * @return the matching contact ids.
+     */
+    public List<Long> select(Collection<Long> allOf, Collection<Long> anyOf, Collection<Long> noneOf,
+                             Long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            // Work on a fresh bitmap so the stored ones are never modified by a query, and start from
+            // the narrowest input: the union of anyOf, else a group of allOf, else every contact.
+            Roaring64NavigableMap result = new Roaring64NavigableMap();
+            if (!anyOf.isEmpty()) {
+                for (Long groupId : anyOf) {
+                    result.or(bitmapOf(groupId));
+                }
+            } else if (!allOf.isEmpty()) {
+                result.or(bitmapOf(allOf.iterator().next()));
+            } else {
+                result.or(contacts);
+            }
+
+            for (Long groupId : allOf) {
+                result.and(bitmapOf(groupId));
+            }
+            for (Long groupId : noneOf) {
+                result.andNot(bitmapOf(groupId));
+            }
+
+            List<Long> page = new ArrayList<>(limit);
+            // rankLong counts the ids <= afterId, which is the position of the first id after it.
+            long position = afterId == null ? 0 : result.rankLong(afterId);
+            long cardinality = result.getLongCardinality();
+            for (long i = position; i < cardinality && page.size() < limit; i++) {
+                page.add(result.select(i));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(Change change) {
+        lock.writeLock().lock();
+        try {
+            change.apply(contacts, members);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Roaring64NavigableMap bitmapOf(Long groupId) {
+        Roaring64NavigableMap bitmap = members.get(groupId);
+        return bitmap == null ? new Roaring64NavigableMap() : bitmap;
+    }
+
+    // A change to the index that can be applied again to the bitmaps of a rebuild.
+    @FunctionalInterface
+    private interface Change {
+        void apply(Roaring64NavigableMap contacts, Map<Long, Roaring64NavigableMap> members);
+    }
+}
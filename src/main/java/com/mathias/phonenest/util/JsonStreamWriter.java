@@ -0,0 +1,74 @@
+package com.mathias.phonenest.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes values to a response one at a time, either as a JSON array or as newline-delimited JSON.
+ * Nothing is collected in memory beyond the generator's buffer. Writes block while the client is
+ * slow to read, which in turn pauses whoever is producing the values.
+ */
+public class JsonStreamWriter {
+
+    // The first value is flushed at once for a fast first byte; after that every this many values.
+    private static final int FLUSH_EVERY = 100;
+
+    private final JsonGenerator generator;
+    private final ObjectWriter writer;
+    private final boolean ndjson;
+    private long written;
+
+    /**
+     * @param objectMapper the application's mapper, so values look the same as in the list endpoints.
+     * @param out          the response body; it is flushed but not closed.
+     * @param ndjson       true for one JSON document per line, false for a single JSON array.
+     */
+    public JsonStreamWriter(ObjectMapper objectMapper, OutputStream out, boolean ndjson) throws IOException {
+        this.generator = objectMapper.getFactory().createGenerator(out);
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // Flushing after every value would turn each row into its own network write.
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.ndjson = ndjson;
+        if (ndjson) {
+            generator.setRootValueSeparator(null);
+        } else {
+            generator.writeStartArray();
+        }
+    }
+
+    /**
+     * Write one value. IOExceptions (typically a client that went away) are rethrown unchecked so
+     * they abort the producer.
+     */
+    public void write(Object value) {
+        try {
+            writer.writeValue(generator, value);
+            if (ndjson) {
+                generator.writeRaw('\n');
+            }
+            written++;
+            if (written == 1 || written % FLUSH_EVERY == 0) {
+                generator.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Complete the document after the last value. Deliberately not called when the producer fails,
+     * so a broken-off JSON array stays invalid instead of looking like a complete, shorter result.
+     */
+    public void finish() throws IOException {
+        if (!ndjson) {
+            generator.writeEndArray();
+        }
+        generator.close();
+    }
+}
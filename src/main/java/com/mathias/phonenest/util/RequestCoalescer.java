@@ -0,0 +1,148 @@
+package com.mathias.phonenest.util;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class RequestCoalescer<K, V> {
+
+    // Expired results are only swept once the map grows past this size.
+    private static final int PURGE_THRESHOLD = 1024;
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<K, CachedResult<V>> recentResults = new ConcurrentHashMap<>();
+    private final long resultTtlNanos;
+    // Bumped by invalidate(); a load that started under an older generation must not be remembered.
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder executions = new LongAdder();
+
+    /**
+     * Create a coalescer that shares in-flight executions between callers asking for the same key.
+     *
+     * @param resultTtl how long a finished result may still be handed out; zero disables result reuse.
+     */
+    public RequestCoalescer(Duration resultTtl) {
+        this.resultTtlNanos = resultTtl.toNanos();
+    }
+
+    /**
+     * Return the value for the given key, running the loader only if no identical request is already
+     * in flight (and no result younger than the TTL exists). Every concurrent caller for the same key
+     * receives the same value instance, or the same exception if the loader failed, so the loader
+     * should return an immutable value.
+     *
+     * @param key    identifies the request; equal keys are coalesced.
+     * @param loader the work to run when this caller is the first one for the key.
+     * @return the shared result.
+     */
+    public V execute(K key, Supplier<V> loader) {
+        requests.increment();
+
+        if (resultTtlNanos > 0) {
+            CachedResult<V> cached = recentResults.get(key);
+            if (cached != null) {
+                if (!cached.isExpired()) {
+                    return cached.value();
+                }
+                recentResults.remove(key, cached);
+            }
+        }
+
+        long startedIn = generation.get();
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            // Another caller is already running this request; wait for its result.
+            return await(existing);
+        }
+
+        executions.increment();
+        try {
+            V value = loader.get();
+            if (resultTtlNanos > 0) {
+                remember(key, value, startedIn);
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Drop every remembered result so the next request goes to the loader again. Loads already in
+     * flight still answer their current callers, but later callers no longer join them and their
+     * results are not remembered, since they may have read the data before the change.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        inFlight.clear();
+        recentResults.clear();
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getExecutionCount() {
+        return executions.sum();
+    }
+
+    public long getCoalescedCount() {
+        return getRequestCount() - getExecutionCount();
+    }
+
+    /**
+     * @return the share of requests that were answered without running the loader, between 0 and 1.
+     */
+    public double getCoalescingRatio() {
+        long total = getRequestCount();
+        return total == 0 ? 0.0 : (double) getCoalescedCount() / total;
+    }
+
+    private void remember(K key, V value, long startedIn) {
+        if (generation.get() != startedIn) {
+            return;
+        }
+        if (recentResults.size() >= PURGE_THRESHOLD) {
+            recentResults.values().removeIf(CachedResult::isExpired);
+        }
+        CachedResult<V> result = new CachedResult<>(value, System.nanoTime() + resultTtlNanos);
+        recentResults.put(key, result);
+        // An invalidate() that ran while the result was being stored must still win.
+        if (generation.get() != startedIn) {
+            recentResults.remove(key, result);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private record CachedResult<V>(V value, long expiresAtNanos) {
+        boolean isExpired() {
+            return System.nanoTime() - expiresAtNanos >= 0;
+        }
+    }
+}
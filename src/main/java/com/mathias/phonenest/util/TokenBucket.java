@@ -0,0 +1,59 @@
+package com.mathias.phonenest.util;
+
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long refilledAt;
+
+    /**
+     * Create a full bucket.
+     *
+     * @param ratePerSecond how many tokens are added per second; must be positive.
+     * @param burst         how many tokens the bucket holds, i.e. how many calls may arrive at once.
+     */
+    public TokenBucket(double ratePerSecond, int burst) {
+        this.capacity = Math.max(1, burst);
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Take one token if there is one.
+     *
+     * @return 0 if a token was taken, otherwise how many nanoseconds until the next one is available.
+     */
+    public synchronized long tryConsume() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    /**
+     * Give back a token taken by {@link #tryConsume()} for a call that was not carried out after all.
+     */
+    public synchronized void refund() {
+        refill();
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    /**
+     * @return true once the bucket has refilled completely, i.e. its client has been quiet for a while.
+     */
+    public synchronized boolean isFull() {
+        refill();
+        return tokens >= capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+}
@@ -0,0 +1,117 @@
+package com.mathias.phonenest.infrastucture.controller;
+
+import com.mathias.phonenest.payload.request.ContactRequest;
+import com.mathias.phonenest.repository.ContactRepository;
+import com.mathias.phonenest.service.ContactService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The conditional-update outcomes of PATCH /api/contacts/{id}.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ContactControllerPatchTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ContactService contactService;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long id;
+
+    @BeforeEach
+    void createContact() {
+        jdbcTemplate.execute("DELETE FROM contact_group_member_tbl");
+        jdbcTemplate.execute("DELETE FROM contact_tbl");
+        id = create("John", "john@example.com", "08012345678");
+    }
+
+    @Test
+    void currentVersionIsPatched() throws Exception {
+        mockMvc.perform(patchContact(id, "\"0\"", "{\"firstName\":\"Jane\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""));
+
+        assertEquals("Jane", contactRepository.findById(id).orElseThrow().getFirstName());
+    }
+
+    @Test
+    void staleVersionIsRejectedWith412() throws Exception {
+        mockMvc.perform(patchContact(id, "\"0\"", "{\"firstName\":\"Jane\"}")).andExpect(status().isOk());
+
+        mockMvc.perform(patchContact(id, "\"0\"", "{\"firstName\":\"Joan\"}")).andExpect(status().isPreconditionFailed());
+        assertEquals("Jane", contactRepository.findById(id).orElseThrow().getFirstName());
+    }
+
+    @Test
+    void missingContactIsRejectedWith404() throws Exception {
+        mockMvc.perform(patchContact(id + 1000, "\"0\"", "{\"firstName\":\"Jane\"}")).andExpect(status().isNotFound());
+    }
+
+    // Deleting does not change the version, so only the live-row restriction of the UPDATE can refuse it.
+    @Test
+    void deletedContactIsRejectedWith404() throws Exception {
+        contactService.deleteContact(id);
+
+        mockMvc.perform(patchContact(id, "\"0\"", "{\"firstName\":\"Jane\"}")).andExpect(status().isNotFound());
+        assertEquals("John", jdbcTemplate.queryForObject("SELECT first_name FROM contact_tbl WHERE id = ?", String.class, id));
+    }
+
+    @Test
+    void weakEtagIsRejectedWith412() throws Exception {
+        mockMvc.perform(patchContact(id, "W/\"0\"", "{\"firstName\":\"Jane\"}")).andExpect(status().isPreconditionFailed());
+        assertEquals("John", contactRepository.findById(id).orElseThrow().getFirstName());
+    }
+
+    // The phone number is the unique field a patch can change; email cannot be patched.
+    @Test
+    void phoneNumberOfAnotherContactIsRejectedWith409() throws Exception {
+        create("Mary", "mary@example.com", "08087654321");
+
+        mockMvc.perform(patchContact(id, "\"0\"", "{\"phoneNumber\":\"08087654321\"}")).andExpect(status().isConflict());
+        assertEquals("08012345678", contactRepository.findById(id).orElseThrow().getPhoneNumber());
+    }
+
+    @Test
+    void missingIfMatchIsRejectedWith428() throws Exception {
+        mockMvc.perform(patch("/api/contacts/" + id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Jane\"}"))
+                .andExpect(status().isPreconditionRequired());
+    }
+
+    private Long create(String firstName, String email, String phoneNumber) {
+        contactService.createContact(ContactRequest.builder()
+                .firstName(firstName).lastName("Doe").email(email).phoneNumber(phoneNumber).build());
+        return contactRepository.findByEmail(email).orElseThrow().getId();
+    }
+
+    private static MockHttpServletRequestBuilder patchContact(Long id, String ifMatch, String body) {
+        return patch("/api/contacts/" + id)
+                .header("If-Match", ifMatch)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body);
+    }
+}
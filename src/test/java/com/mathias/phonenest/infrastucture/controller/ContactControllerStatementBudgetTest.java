@@ -0,0 +1,236 @@
+package com.mathias.phonenest.infrastucture.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mathias.phonenest.service.ContactGroupService;
+import com.mathias.phonenest.support.SqlCapture;
+import com.mathias.phonenest.support.SqlCaptureConfig;
+import com.mathias.phonenest.support.StatementBudget;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Statement budgets for the ContactController endpoints, measured across the whole request.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(SqlCaptureConfig.class)
+class ContactControllerStatementBudgetTest {
+
+    private static final int BULK_SIZE = 10_000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SqlCapture sqlCapture;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ContactGroupService contactGroupService;
+
+    @BeforeEach
+    void emptyTables() {
+        jdbcTemplate.execute("DELETE FROM contact_group_member_tbl");
+        jdbcTemplate.execute("DELETE FROM contact_tbl");
+        contactGroupService.rebuildIndex();
+    }
+
+    @Test
+    void addContact() throws Exception {
+        sqlCapture.clear();
+        mockMvc.perform(post("/api/contacts/add-contact")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"firstName":"John","lastName":"Doe","email":"john@example.com",
+                                 "phoneNumber":"08012345678","groupName":"WORK"}"""))
+                .andExpect(status().isCreated());
+
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(2).inserts(2));
+    }
+
+    @Test
+    void updateContact() throws Exception {
+        Long id = importContacts(1).get(0);
+
+        sqlCapture.clear();
+        mockMvc.perform(put("/api/contacts/update-contact").param("id", id.toString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"firstName":"Jane","lastName":"Doe","phoneNumber":"08012345678","groupName":"FAMILY"}"""))
+                .andExpect(status().isOk());
+
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1).updates(1).inserts(1));
+    }
+
+    @Test
+    void patchContact() throws Exception {
+        Long id = importContacts(1).get(0);
+
+        sqlCapture.clear();
+        mockMvc.perform(patch("/api/contacts/" + id).header("If-Match", "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Jane\"}"))
+                .andExpect(status().isOk());
+
+        sqlCapture.assertWithin(StatementBudget.allowing().updates(1));
+    }
+
+    @Test
+    void deleteContact() throws Exception {
+        Long id = importContacts(1).get(0);
+
+        sqlCapture.clear();
+        mockMvc.perform(delete("/api/contacts/delete-contact").param("contactId", id.toString()))
+                .andExpect(status().isOk());
+
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1).updates(1));
+    }
+
+    @Test
+    void bulkDelete() throws Exception {
+        List<Long> ids = importContacts(BULK_SIZE);
+        String body = ids.stream().map(String::valueOf).collect(Collectors.joining(",", "[", "]"));
+
+        sqlCapture.clear();
+        mockMvc.perform(delete("/api/contacts/bulk-delete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk());
+
+        sqlCapture.assertWithin(StatementBudget.allowing().total(10));
+    }
+
+    @Test
+    void importCsv() throws Exception {
+        sqlCapture.clear();
+        importContacts(BULK_SIZE);
+
+        // The id lookup done by importContacts is the one SELECT.
+        sqlCapture.assertWithin(StatementBudget.allowing().inserts(20).selects(1));
+    }
+
+    @Test
+    void importWithAnInvalidRowWritesNothing() throws Exception {
+        String csv = "firstName,lastName,email,phoneNumber,contactImage,address,groupName\n"
+                + "John,Doe,john@example.com,08012345678,,,work\n"
+                + "Jane,,not-an-email,08012345679,,,work\n";
+        MockMultipartFile file = new MockMultipartFile("file", "contacts.csv", "text/csv",
+                csv.getBytes(StandardCharsets.UTF_8));
+
+        sqlCapture.clear();
+        mockMvc.perform(multipart("/api/contacts/import").file(file))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("Row 2: LastName is required")));
+
+        sqlCapture.assertWithin(StatementBudget.allowing());
+    }
+
+    @Test
+    void readEndpointsAreOneSelectEach() throws Exception {
+        importContacts(100);
+
+        sqlCapture.clear();
+        mockMvc.perform(get("/api/contacts/get-all-contacts")).andExpect(status().isOk());
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+
+        sqlCapture.clear();
+        mockMvc.perform(get("/api/contacts/search").param("query", "john")).andExpect(status().isOk());
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+
+        sqlCapture.clear();
+        mockMvc.perform(get("/api/contacts/get-contact-by-group").param("groupName", "WORK")).andExpect(status().isOk());
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+
+        sqlCapture.clear();
+        mockMvc.perform(post("/api/contacts/query")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"groups\":[\"WORK\"],\"namePrefix\":\"Jo\",\"limit\":10}"))
+                .andExpect(status().isOk());
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+
+        sqlCapture.clear();
+        mockMvc.perform(post("/api/contacts/groups/query")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"allOf\":[\"work\"],\"noneOf\":[\"golf\"],\"limit\":10}"))
+                .andExpect(status().isOk());
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+
+        sqlCapture.clear();
+        mockMvc.perform(get("/api/contacts/export")).andExpect(status().isOk());
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+    }
+
+    @Test
+    void streamEndpointsAreOneSelectEach() throws Exception {
+        importContacts(1200);
+
+        sqlCapture.clear();
+        String ndjson = stream(get("/api/contacts/stream/all").accept(MediaType.APPLICATION_NDJSON));
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+        assertEquals(1200, ndjson.lines().count());
+
+        sqlCapture.clear();
+        String array = stream(get("/api/contacts/stream/group").param("groupName", "WORK"));
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+        assertEquals(1200, objectMapper.readTree(array).size());
+
+        sqlCapture.clear();
+        String search = stream(get("/api/contacts/stream/search").param("query", "john119"));
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+        assertEquals(11, objectMapper.readTree(search).size());
+    }
+
+    private String stream(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult started = mockMvc.perform(requestBuilder).andExpect(request().asyncStarted()).andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    private List<Long> importContacts(int count) throws Exception {
+        StringBuilder csv = new StringBuilder("firstName,lastName,email,phoneNumber,contactImage,address,groupName\n");
+        for (int i = 0; i < count; i++) {
+            csv.append("John").append(i).append(",Doe").append(i).append(",john").append(i).append("@example.com,")
+                    .append(String.format("%011d", i)).append(",,,work\n");
+        }
+        MockMultipartFile file = new MockMultipartFile("file", "contacts.csv", "text/csv",
+                csv.toString().getBytes(StandardCharsets.UTF_8));
+        mockMvc.perform(multipart("/api/contacts/import").file(file)).andExpect(status().isOk());
+
+        return jdbcTemplate.queryForList("SELECT id FROM contact_tbl ORDER BY id", Long.class);
+    }
+}
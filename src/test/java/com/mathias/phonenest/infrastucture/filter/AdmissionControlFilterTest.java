@@ -0,0 +1,177 @@
+package com.mathias.phonenest.infrastucture.filter;
+
+import com.mathias.phonenest.util.AdmissionLane;
+import com.mathias.phonenest.util.ContactWriteGate;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControlFilterTest {
+
+    private final AdmissionLane interactiveLane =
+            new AdmissionLane("interactive", 2, Duration.ZERO, Duration.ofSeconds(1), 0, 0);
+    private final AdmissionLane bulkLane =
+            new AdmissionLane("bulk", 2, Duration.ZERO, Duration.ofSeconds(10), 0, 0);
+    private final ContactWriteGate writeGate = new ContactWriteGate();
+    private final AdmissionControlFilter filter = new AdmissionControlFilter(true, interactiveLane, bulkLane,
+            List.of("/api/contacts/import", "/api/contacts/stream/**", "/api/contacts/snapshot/**"),
+            List.of("/api/contacts/snapshot/**"), writeGate);
+
+    @Test
+    void fullBulkLaneShedsBulkButNotInteractiveRequests() throws Exception {
+        AtomicReference<MockHttpServletResponse> bulk = new AtomicReference<>();
+        AtomicReference<MockHttpServletResponse> interactive = new AtomicReference<>();
+
+        // While a snapshot holds the whole bulk lane, an import is shed and a search still runs.
+        run("POST", "/api/contacts/snapshot", (request, response) -> {
+            bulk.set(run("POST", "/api/contacts/import"));
+            interactive.set(run("GET", "/api/contacts/search"));
+        });
+
+        assertEquals(503, bulk.get().getStatus());
+        assertEquals("10", bulk.get().getHeader("Retry-After"));
+        assertEquals(200, interactive.get().getStatus());
+        assertEquals(0, bulkLane.getInFlight());
+        assertEquals(0, interactiveLane.getInFlight());
+    }
+
+    @Test
+    void bulkPathIsMatchedAsTheDispatcherSeesIt() throws Exception {
+        for (String uri : List.of("/api/contacts/import;jsessionid=abc", "/api/contacts%2Fimport",
+                "/api//contacts/import")) {
+            AtomicReference<Integer> bulkInFlight = new AtomicReference<>();
+            run("POST", uri, (request, response) -> bulkInFlight.set(bulkLane.getInFlight()));
+            assertEquals(1, bulkInFlight.get(), uri);
+        }
+        // And the restore still takes the whole bulk lane without passing the write gate.
+        assertTrue(writeGate.tryClose(Duration.ZERO));
+        try {
+            AtomicReference<Integer> bulkInFlight = new AtomicReference<>();
+            run("POST", "/api/contacts/snapshot;x=1/restore", (request, response) ->
+                    bulkInFlight.set(bulkLane.getInFlight()));
+            assertEquals(2, bulkInFlight.get());
+        } finally {
+            writeGate.open();
+        }
+    }
+
+    @Test
+    void streamingRequestKeepsItsSlotUntilTheResponseIsComplete() throws Exception {
+        MockHttpServletRequest request = request("GET", "/api/contacts/stream/all");
+        request.setAsyncSupported(true);
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+
+        assertEquals(1, bulkLane.getInFlight());
+        request.getAsyncContext().complete();
+        assertEquals(0, bulkLane.getInFlight());
+    }
+
+    @Test
+    void clientOverItsRateIsRejectedWithRetryAfter() throws Exception {
+        AdmissionLane limited = new AdmissionLane("interactive", 10, Duration.ZERO, Duration.ofSeconds(1), 0.5, 2);
+        AdmissionControlFilter rateLimited = new AdmissionControlFilter(true, limited, bulkLane, List.of(), List.of(),
+                writeGate);
+
+        assertEquals(200, run(rateLimited, request("GET", "/api/contacts/search")).getStatus());
+        assertEquals(200, run(rateLimited, request("GET", "/api/contacts/search")).getStatus());
+        MockHttpServletResponse rejected = run(rateLimited, request("GET", "/api/contacts/search"));
+        assertEquals(429, rejected.getStatus());
+        assertEquals("2", rejected.getHeader("Retry-After"));
+
+        // Other clients have their own budget.
+        MockHttpServletRequest other = request("GET", "/api/contacts/search");
+        other.setRemoteAddr("10.0.0.2");
+        assertEquals(200, run(rateLimited, other).getStatus());
+    }
+
+    @Test
+    void shedRequestDoesNotUseUpItsClientsRate() throws Exception {
+        AdmissionLane limited = new AdmissionLane("bulk", 1, Duration.ZERO, Duration.ofSeconds(10), 0.001, 2);
+        AdmissionControlFilter rateLimited = new AdmissionControlFilter(true, interactiveLane, limited,
+                List.of("/api/contacts/import"), List.of(), writeGate);
+
+        // Two imports shed while the first one runs get their tokens back, so the second token of the burst is left.
+        rateLimited.doFilter(request("POST", "/api/contacts/import"), new MockHttpServletResponse(), (req, res) -> {
+            assertEquals(503, run(rateLimited, request("POST", "/api/contacts/import")).getStatus());
+            assertEquals(503, run(rateLimited, request("POST", "/api/contacts/import")).getStatus());
+        });
+        assertEquals(200, run(rateLimited, request("POST", "/api/contacts/import")).getStatus());
+        assertEquals(429, run(rateLimited, request("POST", "/api/contacts/import")).getStatus());
+    }
+
+    @Test
+    void disabledFilterAdmitsEverything() throws Exception {
+        AdmissionControlFilter disabled = new AdmissionControlFilter(false, interactiveLane, bulkLane,
+                List.of("/api/contacts/snapshot/**"), List.of("/api/contacts/snapshot/**"), writeGate);
+
+        disabled.doFilter(request("POST", "/api/contacts/snapshot"), new MockHttpServletResponse(), (req, res) ->
+                assertEquals(200, run(disabled, request("POST", "/api/contacts/snapshot")).getStatus()));
+        assertEquals(0, bulkLane.getInFlight());
+    }
+
+    @Test
+    void writesAreTurnedAwayWhileTheGateIsClosed() throws Exception {
+        AdmissionControlFilter disabled = new AdmissionControlFilter(false, interactiveLane, bulkLane,
+                List.of("/api/contacts/snapshot/**"), List.of("/api/contacts/snapshot/**"), writeGate);
+        assertTrue(writeGate.tryClose(Duration.ZERO));
+
+        // Also with admission control switched off; reads and the restore itself still pass.
+        MockHttpServletResponse write = run(disabled, request("PATCH", "/api/contacts/1"));
+        assertEquals(503, write.getStatus());
+        assertEquals("10", write.getHeader("Retry-After"));
+        assertEquals(503, run("POST", "/api/contacts/add-contact").getStatus());
+        assertEquals(200, run("GET", "/api/contacts/search").getStatus());
+        assertEquals(200, run("POST", "/api/contacts/snapshot/restore").getStatus());
+
+        writeGate.open();
+        assertEquals(200, run(disabled, request("PATCH", "/api/contacts/1")).getStatus());
+    }
+
+    @Test
+    void gateClosesOnlyOnceTheWritesInFlightHaveFinished() throws Exception {
+        AtomicBoolean closedDuringWrite = new AtomicBoolean();
+        run("POST", "/api/contacts/add-contact", (request, response) -> {
+            try {
+                closedDuringWrite.set(writeGate.tryClose(Duration.ofMillis(10)));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertFalse(closedDuringWrite.get());
+        assertTrue(writeGate.tryClose(Duration.ZERO));
+        writeGate.open();
+    }
+
+    private MockHttpServletResponse run(String method, String uri) throws ServletException, IOException {
+        return run(filter, request(method, uri));
+    }
+
+    private void run(String method, String uri, FilterChain chain) throws ServletException, IOException {
+        filter.doFilter(request(method, uri), new MockHttpServletResponse(), chain);
+    }
+
+    private static MockHttpServletResponse run(AdmissionControlFilter filter, MockHttpServletRequest request)
+            throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String method, String uri) {
+        return new MockHttpServletRequest(method, uri);
+    }
+}
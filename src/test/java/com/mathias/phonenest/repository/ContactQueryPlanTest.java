@@ -0,0 +1,235 @@
+package com.mathias.phonenest.repository;
+
+import com.mathias.phonenest.domain.entities.Contact;
+import com.mathias.phonenest.domain.enums.ContactSortField;
+import com.mathias.phonenest.domain.enums.Group;
+import com.mathias.phonenest.exceptions.InvalidFormatException;
+import com.mathias.phonenest.payload.request.ContactQueryRequest;
+import com.mathias.phonenest.payload.response.ContactPageResponse;
+import com.mathias.phonenest.service.ContactGroupService;
+import com.mathias.phonenest.service.ContactService;
+import com.mathias.phonenest.support.SqlCapture;
+import com.mathias.phonenest.support.SqlCapture.CapturedStatement;
+import com.mathias.phonenest.support.SqlCaptureConfig;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the indexed filters of the structured contact query, EXPLAINs the SQL Hibernate actually
+ * sent and fails unless the filter is part of the lookup in the index meant for it.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(SqlCaptureConfig.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ContactQueryPlanTest {
+
+    private static final String[] FIRST_NAMES = {"John", "Joan", "Mary", "Peter", "Ada", "Grace", "Linus", "Ken"};
+    private static final String[] DOMAINS = {"example.com", "mail.org", "work.net", "school.edu"};
+
+    @Autowired
+    private ContactService contactService;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private ContactGroupService contactGroupService;
+
+    @Autowired
+    private SqlCapture sqlCapture;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void seedContacts() throws Exception {
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            contacts.add(Contact.builder()
+                    .firstName(FIRST_NAMES[i % FIRST_NAMES.length] + i)
+                    .lastName("Last" + i)
+                    .email("user" + i + "@" + DOMAINS[i % DOMAINS.length])
+                    .phoneNumber(String.format("%011d", i))
+                    .contactImage(i % 10 == 0 ? "https://img/" + i : null)
+                    .groupName(Group.values()[i % Group.values().length])
+                    .build());
+        }
+        contactRepository.saveAll(contacts);
+        Map<Long, List<String>> groupNamesByContact = new HashMap<>();
+        contacts.forEach(contact -> groupNamesByContact.put(contact.getId(), List.of(contact.getGroupName().name())));
+        contactGroupService.addMembers(groupNamesByContact);
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.createStatement().execute("ANALYZE");
+        }
+    }
+
+    /*
+     * Each case names the index the filter must be looked up in and the condition that must be
+     * part of that lookup. Queries without a filter read the index of their sort order. Groups
+     * are looked up in the membership index, also when other filters are set.
+     */
+    static Stream<Arguments> indexedFilters() {
+        LocalDateTime now = LocalDateTime.now();
+        return Stream.of(
+                Arguments.of("no filter", ContactQueryRequest.builder().build(),
+                        "idx_contact_live_name", "deleted_at is null"),
+                Arguments.of("no filter by creation", ContactQueryRequest.builder()
+                        .sortBy(ContactSortField.CREATED_AT).build(),
+                        "idx_contact_live_created_at", "deleted_at is null"),
+                Arguments.of("single group", ContactQueryRequest.builder()
+                        .groups(Set.of("work")).build(),
+                        "idx_group_member_group", "group_id = "),
+                Arguments.of("group set", ContactQueryRequest.builder()
+                        .groups(Set.of("Work", "FAMILY")).build(),
+                        "idx_group_member_group", "group_id in("),
+                Arguments.of("name prefix", ContactQueryRequest.builder()
+                        .namePrefix("Jo").build(),
+                        "idx_contact_live_name", "first_name >= 'jo'"),
+                Arguments.of("name prefix descending", ContactQueryRequest.builder()
+                        .namePrefix("Jo").direction(Sort.Direction.DESC).build(),
+                        "idx_contact_live_name", "first_name >= 'jo'"),
+                Arguments.of("email domain", ContactQueryRequest.builder()
+                        .emailDomain("Example.com").build(),
+                        "idx_contact_live_email_domain", "email_domain = "),
+                Arguments.of("created range", ContactQueryRequest.builder()
+                        .createdFrom(now.minusDays(1)).createdTo(now.plusDays(1))
+                        .sortBy(ContactSortField.CREATED_AT).build(),
+                        "idx_contact_live_created_at", "created_at >= "),
+                Arguments.of("updated range", ContactQueryRequest.builder()
+                        .updatedFrom(now.minusDays(1)).updatedTo(now.plusDays(1))
+                        .sortBy(ContactSortField.UPDATED_AT).build(),
+                        "idx_contact_live_updated_at", "updated_at >= "),
+                Arguments.of("combined", ContactQueryRequest.builder()
+                        .groups(Set.of("friends")).namePrefix("Ma").hasImage(false).build(),
+                        "idx_group_member_group", "group_id = ")
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("indexedFilters")
+    void indexedFilterIsLookedUpInItsIndex(String name, ContactQueryRequest queryRequest,
+                                           String index, String condition) throws Exception {
+        sqlCapture.clear();
+        contactService.queryContacts(queryRequest);
+
+        assertIndexLookup(explain(singleContactSelect()), index, condition, name);
+    }
+
+    @Test
+    void hasImageAloneIsRejected() {
+        assertThrows(InvalidFormatException.class,
+                () -> contactService.queryContacts(ContactQueryRequest.builder().hasImage(true).build()));
+    }
+
+    @Test
+    void unknownGroupMatchesNobody() {
+        ContactPageResponse page = contactService.queryContacts(ContactQueryRequest.builder()
+                .groups(Set.of("no such group")).build());
+
+        assertTrue(page.getContacts().isEmpty());
+    }
+
+    @Test
+    void nextPageIsLookedUpInTheNameIndex() throws Exception {
+        ContactQueryRequest firstPage = ContactQueryRequest.builder().namePrefix("Jo").limit(10).build();
+        ContactPageResponse page = contactService.queryContacts(firstPage);
+        assertNotNull(page.getNextCursor());
+
+        sqlCapture.clear();
+        ContactQueryRequest nextPage = ContactQueryRequest.builder()
+                .namePrefix("Jo").limit(10).cursor(page.getNextCursor()).build();
+        contactService.queryContacts(nextPage);
+
+        assertIndexLookup(explain(singleContactSelect()), "idx_contact_live_name", "first_name >= ", "next page");
+    }
+
+    @Test
+    void cursorPagesThroughNullSortKeys() {
+        // Rows written outside Hibernate, e.g. by a restore, may lack created_at.
+        for (int i = 0; i < 5; i++) {
+            jdbcTemplate.update("INSERT INTO contact_tbl (first_name, last_name, phone_number, email, created_at, version) "
+                            + "VALUES (?, ?, ?, ?, ?, 0)", "Nullish" + i, "Last", String.format("9%010d", i),
+                    "nullish" + i + "@example.com", i < 3 ? null : Timestamp.valueOf(LocalDateTime.now().plusDays(i)));
+        }
+
+        for (Sort.Direction direction : Sort.Direction.values()) {
+            Set<Long> seen = new HashSet<>();
+            String cursor = null;
+            do {
+                ContactPageResponse page = contactService.queryContacts(ContactQueryRequest.builder()
+                        .namePrefix("Nullish").sortBy(ContactSortField.CREATED_AT).direction(direction)
+                        .limit(2).cursor(cursor).build());
+                page.getContacts().forEach(contact -> assertTrue(seen.add(contact.getId()), "returned twice"));
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+            assertEquals(5, seen.size(), () -> direction + " paging skipped contacts");
+        }
+    }
+
+    // H2 prints the chosen index and the conditions used to look it up as "/* public.<index>: ... */".
+    private static void assertIndexLookup(String plan, String index, String condition, String name) {
+        String marker = "/* public." + index + ":";
+        int start = plan.indexOf(marker);
+        assertTrue(start >= 0, () -> name + " does not use " + index + ":\n" + plan);
+        String lookup = plan.substring(start, plan.indexOf("*/", start));
+        assertTrue(lookup.contains(condition),
+                () -> name + " does not look up " + condition + " in " + index + ":\n" + plan);
+    }
+
+    private CapturedStatement singleContactSelect() {
+        List<CapturedStatement> selects = sqlCapture.getStatements().stream()
+                .filter(statement -> statement.sql().toLowerCase(Locale.ROOT).startsWith("select"))
+                .toList();
+        assertEquals(1, selects.size(), () -> "expected exactly one SELECT but got " + selects);
+        return selects.get(0);
+    }
+
+    private String explain(CapturedStatement statement) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement explain = connection.prepareStatement("EXPLAIN " + statement.sql())) {
+            for (ParameterSetOperation operation : statement.parameters()) {
+                operation.getMethod().invoke(explain, operation.getArgs());
+            }
+            try (ResultSet plan = explain.executeQuery()) {
+                plan.next();
+                return plan.getString(1).toLowerCase(Locale.ROOT);
+            }
+        }
+    }
+}
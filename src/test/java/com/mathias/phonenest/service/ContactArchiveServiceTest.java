@@ -0,0 +1,184 @@
+package com.mathias.phonenest.service;
+
+import com.mathias.phonenest.domain.entities.ContactArchive;
+import com.mathias.phonenest.domain.enums.Group;
+import com.mathias.phonenest.exceptions.AlreadyExistException;
+import com.mathias.phonenest.payload.request.ContactRequest;
+import com.mathias.phonenest.repository.ContactArchiveRepository;
+import com.mathias.phonenest.repository.ContactRepository;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ContactArchiveServiceTest {
+
+    @TempDir
+    static Path archiveDirectory;
+
+    @DynamicPropertySource
+    static void archiveProperties(DynamicPropertyRegistry registry) {
+        registry.add("phonenest.archive.directory", archiveDirectory::toString);
+        registry.add("phonenest.archive.pause-between-batches", () -> "0ms");
+    }
+
+    @Autowired
+    private ContactArchiveService contactArchiveService;
+
+    @Autowired
+    private ContactService contactService;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private ContactArchiveRepository contactArchiveRepository;
+
+    @MockitoSpyBean
+    private ContactGroupService contactGroupService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void emptyTablesAndArchive() throws IOException {
+        jdbcTemplate.execute("DELETE FROM contact_group_member_tbl");
+        jdbcTemplate.execute("DELETE FROM contact_group_member_archive_tbl");
+        jdbcTemplate.execute("DELETE FROM contact_archive_tbl");
+        jdbcTemplate.execute("DELETE FROM contact_tbl");
+        contactGroupService.rebuildIndex();
+        try (Stream<Path> files = Files.list(archiveDirectory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void archivesEachDeletedContactOnceInTableAndFile() throws IOException {
+        Long first = create("Ada", "ada@example.com", "08000000001");
+        Long second = create("Ken", "ken@example.com", "08000000002");
+        create("Mary", "mary@example.com", "08000000003");
+        contactService.deleteContact(first);
+        contactService.deleteContact(second);
+
+        assertEquals(2, contactArchiveService.archiveContacts());
+        assertEquals(0, contactArchiveService.archiveContacts());
+
+        assertEquals(Set.of(first, second), Set.copyOf(contactArchiveRepository.findAll().stream()
+                .map(ContactArchive::getId).toList()));
+        assertEquals(List.of(first, second), archivedIds());
+        assertEquals(1, contactRepository.count());
+    }
+
+    @Test
+    void rolledBackBatchIsNotWrittenToTheFile() throws IOException {
+        Long id = create("Ada", "ada@example.com", "08000000001");
+        contactService.deleteContact(id);
+
+        // Fail the first batch after its rows have been copied and staged for the file.
+        doThrow(new IllegalStateException("boom")).doCallRealMethod()
+                .when(contactGroupService).removeFromIndex(anyCollection());
+        assertThrows(IllegalStateException.class, () -> contactArchiveService.archiveContacts());
+        assertTrue(contactArchiveRepository.findAll().isEmpty());
+        assertEquals(List.of(), archivedIds());
+
+        assertEquals(1, contactArchiveService.archiveContacts());
+        assertEquals(List.of(id), archivedIds());
+    }
+
+    @Test
+    void membershipsMoveWithTheContact() {
+        contactService.createContact(ContactRequest.builder()
+                .firstName("Ada").lastName("Lovelace").email("ada@example.com").phoneNumber("08000000001")
+                .groupName(Group.WORK).groups(Set.of("golf club")).build());
+        Long id = contactRepository.findByEmail("ada@example.com").orElseThrow().getId();
+        contactService.deleteContact(id);
+        assertEquals(1, contactArchiveService.archiveContacts());
+        assertEquals(0, memberships("contact_group_member_tbl", id));
+        assertEquals(2, memberships("contact_group_member_archive_tbl", id));
+
+        contactArchiveService.restoreContact(id);
+
+        assertTrue(contactRepository.findById(id).isPresent());
+        assertTrue(contactArchiveRepository.findById(id).isEmpty());
+        assertEquals(2, memberships("contact_group_member_tbl", id));
+        assertEquals(0, memberships("contact_group_member_archive_tbl", id));
+        assertEquals(List.of("GOLF CLUB", "WORK"), contactGroupService.groupNamesOf(id));
+    }
+
+    @Test
+    void restoreIsRejectedWhenTheEmailWasTaken() {
+        Long archived = create("Ada", "ada@example.com", "08000000001");
+        contactService.deleteContact(archived);
+        assertEquals(1, contactArchiveService.archiveContacts());
+        Long deleted = create("Ken", "ken@example.com", "08000000002");
+        contactService.deleteContact(deleted);
+
+        // Both the archived and the only soft-deleted contact lose their email to a new contact.
+        create("Ada", "ada@example.com", "08000000003");
+        create("Ken", "ken@example.com", "08000000004");
+
+        assertThrows(AlreadyExistException.class, () -> contactArchiveService.restoreContact(archived));
+        assertThrows(AlreadyExistException.class, () -> contactArchiveService.restoreContact(deleted));
+        assertTrue(contactArchiveRepository.findById(archived).isPresent());
+        assertTrue(contactRepository.findById(deleted).isEmpty());
+    }
+
+    private Long create(String firstName, String email, String phoneNumber) {
+        contactService.createContact(ContactRequest.builder()
+                .firstName(firstName).lastName("Doe").email(email).phoneNumber(phoneNumber).build());
+        return contactRepository.findByEmail(email).orElseThrow().getId();
+    }
+
+    private int memberships(String table, Long contactId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE contact_id = ?", Integer.class, contactId);
+    }
+
+    // The ids in today's archive file, read as one gzip stream across all batches.
+    private List<Long> archivedIds() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(archiveDirectory)) {
+            files = listing.toList();
+        }
+        assertTrue(files.stream().noneMatch(file -> file.toString().endsWith(".pending")), "pending batch left behind");
+        if (files.isEmpty()) {
+            return List.of();
+        }
+        assertEquals(1, files.size());
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(Files.newInputStream(files.get(0))),
+                StandardCharsets.UTF_8)) {
+            return CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build().parse(reader)
+                    .stream()
+                    .map((CSVRecord record) -> Long.valueOf(record.get("id")))
+                    .toList();
+        }
+    }
+}
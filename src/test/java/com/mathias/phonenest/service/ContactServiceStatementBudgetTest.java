@@ -0,0 +1,176 @@
+package com.mathias.phonenest.service;
+
+import com.mathias.phonenest.domain.entities.Contact;
+import com.mathias.phonenest.domain.enums.Group;
+import com.mathias.phonenest.payload.request.ContactGroupQueryRequest;
+import com.mathias.phonenest.payload.request.ContactQueryRequest;
+import com.mathias.phonenest.payload.request.ContactRequest;
+import com.mathias.phonenest.payload.request.PatchContactRequest;
+import com.mathias.phonenest.payload.request.UpdateContactRequest;
+import com.mathias.phonenest.repository.ContactRepository;
+import com.mathias.phonenest.support.SqlCapture;
+import com.mathias.phonenest.support.SqlCaptureConfig;
+import com.mathias.phonenest.support.StatementBudget;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Statement budgets for the ContactService methods. A failing test prints every SQL statement
+ * the method executed.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(SqlCaptureConfig.class)
+class ContactServiceStatementBudgetTest {
+
+    private static final int BULK_SIZE = 10_000;
+
+    @Autowired
+    private ContactService contactService;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private SqlCapture sqlCapture;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ContactGroupService contactGroupService;
+
+    @BeforeEach
+    void emptyTables() {
+        jdbcTemplate.execute("DELETE FROM contact_group_member_tbl");
+        jdbcTemplate.execute("DELETE FROM contact_tbl");
+        contactGroupService.rebuildIndex();
+        sqlCapture.clear();
+    }
+
+    @Test
+    void createContact() {
+        sqlCapture.clear();
+        contactService.createContact(ContactRequest.builder()
+                .firstName("John").lastName("Doe").email("john@example.com")
+                .phoneNumber("08012345678").groupName(Group.WORK).build());
+
+        // Email and phone duplicate checks, then the contact and its group memberships.
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(2).inserts(2));
+    }
+
+    @Test
+    void updateContact() {
+        Long id = seed(1).get(0);
+
+        sqlCapture.clear();
+        contactService.updateContact(id, UpdateContactRequest.builder()
+                .firstName("Jane").lastName("Doe").phoneNumber("08012345678").groupName(Group.WORK).build());
+
+        // The new primary group adds one membership.
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1).updates(1).inserts(1));
+    }
+
+    @Test
+    void patchContact() {
+        Long id = seed(1).get(0);
+
+        sqlCapture.clear();
+        contactService.patchContact(id, 0, PatchContactRequest.builder().firstName("Jane").build());
+
+        sqlCapture.assertWithin(StatementBudget.allowing().updates(1));
+    }
+
+    @Test
+    void deleteContact() {
+        Long id = seed(1).get(0);
+
+        sqlCapture.clear();
+        contactService.deleteContact(id);
+
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1).updates(1));
+    }
+
+    @Test
+    void bulkDeleteContacts() {
+        List<Long> ids = seed(BULK_SIZE);
+
+        sqlCapture.clear();
+        contactService.bulkDeleteContacts(ids);
+
+        sqlCapture.assertWithin(StatementBudget.allowing().total(10));
+        assertEquals(0, contactRepository.count());
+    }
+
+    @Test
+    void saveAllContacts() {
+        List<Contact> contacts = contacts(BULK_SIZE);
+
+        sqlCapture.clear();
+        contactService.saveAllContacts(contacts);
+
+        // One batch per 1000 contacts and one per 1000 memberships.
+        sqlCapture.assertWithin(StatementBudget.allowing().inserts(20));
+        assertEquals(BULK_SIZE, contactRepository.count());
+    }
+
+    @Test
+    void readQueriesAreOneSelectEach() {
+        seed(100);
+
+        sqlCapture.clear();
+        contactService.getAllContacts();
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+
+        sqlCapture.clear();
+        contactService.searchContacts("john");
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+
+        sqlCapture.clear();
+        contactService.getContactByGroup(Group.WORK);
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+
+        sqlCapture.clear();
+        contactService.queryContacts(ContactQueryRequest.builder().groups(Set.of("WORK")).limit(10).build());
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+
+        sqlCapture.clear();
+        contactService.queryContactsByGroups(ContactGroupQueryRequest.builder()
+                .allOf(Set.of("work")).noneOf(Set.of("family")).limit(10).build());
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+
+        sqlCapture.clear();
+        contactService.getAllContactsEntity();
+        sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+    }
+
+    private List<Long> seed(int count) {
+        contactService.saveAllContacts(contacts(count));
+        return jdbcTemplate.queryForList("SELECT id FROM contact_tbl ORDER BY id", Long.class);
+    }
+
+    private static List<Contact> contacts(int count) {
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            contacts.add(Contact.builder()
+                    .firstName("John" + i)
+                    .lastName("Doe" + i)
+                    .email("john" + i + "@example.com")
+                    .phoneNumber(String.format("%011d", i))
+                    .groupName(Group.values()[i % Group.values().length])
+                    .build());
+        }
+        return contacts;
+    }
+}
@@ -0,0 +1,208 @@
+package com.mathias.phonenest.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mathias.phonenest.domain.enums.Group;
+import com.mathias.phonenest.exceptions.AlreadyExistException;
+import com.mathias.phonenest.exceptions.InvalidFormatException;
+import com.mathias.phonenest.payload.request.ContactRequest;
+import com.mathias.phonenest.payload.response.SnapshotManifest;
+import com.mathias.phonenest.repository.ContactRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ContactSnapshotServiceTest {
+
+    private static final String SELECT_CONTACTS = "SELECT id, first_name, email, group_name, created_at, deleted_at, "
+            + "version FROM contact_tbl ORDER BY id";
+
+    @TempDir
+    static Path snapshotDirectory;
+
+    @DynamicPropertySource
+    static void snapshotProperties(DynamicPropertyRegistry registry) {
+        registry.add("phonenest.snapshot.directory", snapshotDirectory::toString);
+        registry.add("phonenest.snapshot.parallelism", () -> "2");
+        registry.add("phonenest.snapshot.partitions-per-thread", () -> "2");
+        registry.add("phonenest.snapshot.batch-size", () -> "2");
+    }
+
+    @Autowired
+    private ContactSnapshotService contactSnapshotService;
+
+    @Autowired
+    private ContactService contactService;
+
+    @Autowired
+    private ContactGroupService contactGroupService;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void emptyTablesAndSnapshots() throws IOException {
+        emptyTables();
+        try (Stream<Path> files = Files.list(snapshotDirectory)) {
+            for (Path file : files.toList()) {
+                FileSystemUtils.deleteRecursively(file);
+            }
+        }
+    }
+
+    @Test
+    void restoredSnapshotMatchesTheSnapshottedTables() {
+        Long ada = create("Ada", "ada@example.com", "08000000001", Set.of("golf club"));
+        create("Ken", "ken@example.com", "08000000002", Set.of());
+        Long mary = create("Mary", "mary@example.com", "08000000003", Set.of("golf club", "choir"));
+        contactService.deleteContact(mary);
+        List<Map<String, Object>> contacts = jdbcTemplate.queryForList(SELECT_CONTACTS);
+
+        SnapshotManifest manifest = contactSnapshotService.createSnapshot();
+        assertEquals(3, manifest.getRowCount());
+        emptyTables();
+        // A group the target database does not have yet.
+        jdbcTemplate.execute("DELETE FROM contact_group_tbl WHERE name = 'CHOIR'");
+        contactSnapshotService.restoreSnapshot(manifest.getName());
+
+        assertEquals(contacts, jdbcTemplate.queryForList(SELECT_CONTACTS));
+        assertEquals(List.of("GOLF CLUB", "WORK"), contactGroupService.groupNamesOf(ada));
+        // A deleted contact is not in the index but keeps its memberships for a later restore.
+        assertEquals(List.of("CHOIR", "GOLF CLUB", "WORK"), jdbcTemplate.queryForList("SELECT g.name "
+                + "FROM contact_group_member_tbl m JOIN contact_group_tbl g ON g.id = m.group_id "
+                + "WHERE m.contact_id = ? ORDER BY g.name", String.class, mary));
+        assertEquals(List.of(ada), contactGroupService.selectContactIds(Set.of("golf club"), Set.of(), Set.of(), null, 10));
+    }
+
+    @Test
+    void checksumMismatchIsRejectedBeforeAnythingIsLoaded() throws IOException {
+        create("Ada", "ada@example.com", "08000000001", Set.of());
+        SnapshotManifest manifest = contactSnapshotService.createSnapshot();
+        emptyTables();
+        Path partition = snapshotDirectory.resolve(manifest.getName()).resolve(manifest.getPartitions().get(0).getFile());
+        Files.write(partition, new byte[]{1}, StandardOpenOption.APPEND);
+
+        InvalidFormatException e = assertThrows(InvalidFormatException.class,
+                () -> contactSnapshotService.restoreSnapshot(manifest.getName()));
+        assertTrue(e.getMessage().startsWith("Checksum mismatch"));
+        assertEquals(0, contactRepository.count());
+    }
+
+    @Test
+    void fileOutsideTheSnapshotDirectoryIsRejected() throws IOException {
+        create("Ada", "ada@example.com", "08000000001", Set.of());
+        SnapshotManifest manifest = contactSnapshotService.createSnapshot();
+        emptyTables();
+        manifest.getPartitions().get(0).setFile("../" + manifest.getName() + "/" + manifest.getPartitions().get(0).getFile());
+        writeManifest(manifest);
+
+        assertThrows(InvalidFormatException.class, () -> contactSnapshotService.restoreSnapshot(manifest.getName()));
+        assertEquals(0, contactRepository.count());
+    }
+
+    @Test
+    void failedLoadLeavesAnEmptyTableWithItsIndexes() throws IOException {
+        create("Ada", "ada@example.com", "08000000001", Set.of());
+        create("Ken", "ken@example.com", "08000000002", Set.of());
+        SnapshotManifest manifest = contactSnapshotService.createSnapshot();
+        emptyTables();
+        List<String> indexes = contactIndexes();
+
+        // A row whose id is not a number, with a checksum that matches so loading starts.
+        SnapshotManifest.Partition last = manifest.getPartitions().get(manifest.getPartitions().size() - 1);
+        Path file = snapshotDirectory.resolve(manifest.getName()).resolve(last.getFile());
+        String rows;
+        try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            rows = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write((rows + rows.replaceFirst("^\\d+", "x")).getBytes(StandardCharsets.UTF_8));
+        }
+        last.setSha256(sha256(file));
+        writeManifest(manifest);
+
+        assertThrows(NumberFormatException.class, () -> contactSnapshotService.restoreSnapshot(manifest.getName()));
+        assertEquals(0, contactRepository.count());
+        assertEquals(indexes, contactIndexes());
+    }
+
+    @Test
+    void restoreIsRefusedWhileContactsAreArchived() {
+        create("Ada", "ada@example.com", "08000000001", Set.of());
+        SnapshotManifest manifest = contactSnapshotService.createSnapshot();
+        emptyTables();
+        jdbcTemplate.update("INSERT INTO contact_archive_tbl (id, first_name, last_name, phone_number, email, version, "
+                + "archived_at) VALUES (1, 'Ken', 'Doe', '08000000002', 'ken@example.com', 0, CURRENT_TIMESTAMP)");
+
+        try {
+            assertThrows(AlreadyExistException.class, () -> contactSnapshotService.restoreSnapshot(manifest.getName()));
+            assertEquals(0, contactRepository.count());
+        } finally {
+            jdbcTemplate.execute("DELETE FROM contact_archive_tbl");
+        }
+    }
+
+    private Long create(String firstName, String email, String phoneNumber, Set<String> groups) {
+        contactService.createContact(ContactRequest.builder()
+                .firstName(firstName).lastName("Doe").email(email).phoneNumber(phoneNumber)
+                .groupName(Group.WORK).groups(groups).build());
+        return contactRepository.findByEmail(email).orElseThrow().getId();
+    }
+
+    private void emptyTables() {
+        jdbcTemplate.execute("DELETE FROM contact_group_member_tbl");
+        jdbcTemplate.execute("DELETE FROM contact_tbl");
+        contactGroupService.rebuildIndex();
+    }
+
+    private List<String> contactIndexes() {
+        return jdbcTemplate.queryForList("SELECT index_name FROM information_schema.indexes "
+                + "WHERE table_name = 'contact_tbl' ORDER BY index_name", String.class);
+    }
+
+    private void writeManifest(SnapshotManifest manifest) throws IOException {
+        objectMapper.writeValue(snapshotDirectory.resolve(manifest.getName()).resolve("manifest.json").toFile(), manifest);
+    }
+
+    private static String sha256(Path file) throws IOException {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.mathias.phonenest.support;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records every SQL statement executed through the proxied test DataSource,
+ * together with the parameters it was executed with.
+ */
+public class SqlCapture implements QueryExecutionListener {
+
+    private final List<CapturedStatement> statements = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        for (QueryInfo queryInfo : queryInfoList) {
+            List<ParameterSetOperation> parameters = queryInfo.getParametersList().isEmpty()
+                    ? List.of()
+                    : new ArrayList<>(queryInfo.getParametersList().get(0));
+            statements.add(new CapturedStatement(queryInfo.getQuery(), parameters, execInfo.isBatch(),
+                    queryInfo.getParametersList().size()));
+        }
+    }
+
+    public void clear() {
+        statements.clear();
+    }
+
+    public List<CapturedStatement> getStatements() {
+        return List.copyOf(statements);
+    }
+
+    /**
+     * Assert that the statements captured since the last {@link #clear()} fit the budget.
+     */
+    public void assertWithin(StatementBudget budget) {
+        budget.verify(getStatements());
+    }
+
+    /**
+     * One executed statement. For batches, parameters holds the first parameter set
+     * and batchSize the number of sets that were sent in the batch.
+     */
+    public record CapturedStatement(String sql, List<ParameterSetOperation> parameters, boolean batch, int batchSize) {
+    }
+}
@@ -0,0 +1,37 @@
+package com.mathias.phonenest.support;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application DataSource in a datasource-proxy so tests can inspect the executed SQL.
+ */
+@TestConfiguration
+public class SqlCaptureConfig {
+
+    @Bean
+    public SqlCapture sqlCapture() {
+        return new SqlCapture();
+    }
+
+    @Bean
+    public static BeanPostProcessor sqlCaptureDataSourceWrapper(ObjectProvider<SqlCapture> sqlCapture) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource) {
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name(beanName)
+                            .listener(sqlCapture.getObject())
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+}
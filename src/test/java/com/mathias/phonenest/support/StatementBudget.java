@@ -0,0 +1,117 @@
+package com.mathias.phonenest.support;
+
+import com.mathias.phonenest.support.SqlCapture.CapturedStatement;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The maximum number of JDBC statements a piece of code may execute, per statement kind and in total.
+ * A JDBC batch counts as one statement, since it is sent in one round-trip.
+ * <p>
+ * Kinds that are not given a limit are not allowed at all, unless {@link #total(int)} is set,
+ * in which case they are only bounded by the total.
+ * <pre>
+ * sqlCapture.clear();
+ * contactService.searchContacts("john");
+ * sqlCapture.assertWithin(StatementBudget.allowing().selects(1));
+ * </pre>
+ */
+public final class StatementBudget {
+
+    public enum Kind { SELECT, INSERT, UPDATE, DELETE, OTHER }
+
+    private final Map<Kind, Integer> limits = new EnumMap<>(Kind.class);
+    private Integer total;
+
+    private StatementBudget() {
+    }
+
+    public static StatementBudget allowing() {
+        return new StatementBudget();
+    }
+
+    public StatementBudget selects(int max) {
+        return limit(Kind.SELECT, max);
+    }
+
+    public StatementBudget inserts(int max) {
+        return limit(Kind.INSERT, max);
+    }
+
+    public StatementBudget updates(int max) {
+        return limit(Kind.UPDATE, max);
+    }
+
+    public StatementBudget deletes(int max) {
+        return limit(Kind.DELETE, max);
+    }
+
+    public StatementBudget total(int max) {
+        this.total = max;
+        return this;
+    }
+
+    /**
+     * @throws AssertionError listing every executed statement if the budget is exceeded.
+     */
+    public void verify(List<CapturedStatement> statements) {
+        Map<Kind, Integer> counts = new EnumMap<>(Kind.class);
+        for (CapturedStatement statement : statements) {
+            counts.merge(kindOf(statement.sql()), 1, Integer::sum);
+        }
+
+        boolean exceeded = total != null && statements.size() > total;
+        for (Kind kind : Kind.values()) {
+            int count = counts.getOrDefault(kind, 0);
+            Integer limit = limits.get(kind);
+            if (limit != null ? count > limit : total == null && count > 0) {
+                exceeded = true;
+            }
+        }
+        if (exceeded) {
+            throw new AssertionError(describe(counts, statements));
+        }
+    }
+
+    private StatementBudget limit(Kind kind, int max) {
+        limits.put(kind, max);
+        return this;
+    }
+
+    private String describe(Map<Kind, Integer> counts, List<CapturedStatement> statements) {
+        StringBuilder message = new StringBuilder("Statement budget exceeded.\n  allowed: ");
+        for (Kind kind : Kind.values()) {
+            Integer limit = limits.get(kind);
+            message.append(kind).append(' ').append(limit != null ? "<= " + limit : total != null ? "any" : "none").append(", ");
+        }
+        message.append("total ").append(total != null ? "<= " + total : "unbounded");
+        message.append("\n  executed: ");
+        for (Kind kind : Kind.values()) {
+            message.append(kind).append(' ').append(counts.getOrDefault(kind, 0)).append(", ");
+        }
+        message.append("total ").append(statements.size()).append("\nExecuted SQL:");
+        for (int i = 0; i < statements.size(); i++) {
+            CapturedStatement statement = statements.get(i);
+            message.append("\n  ").append(i + 1).append(". [").append(kindOf(statement.sql()));
+            if (statement.batch()) {
+                message.append(" batch x").append(statement.batchSize());
+            }
+            message.append("] ").append(statement.sql().replaceAll("\\s+", " ").trim());
+        }
+        return message.toString();
+    }
+
+    private static Kind kindOf(String sql) {
+        String keyword = sql.stripLeading().split("\\s+", 2)[0].toUpperCase(Locale.ROOT);
+        return switch (keyword) {
+            case "SELECT", "WITH" -> Kind.SELECT;
+            case "INSERT" -> Kind.INSERT;
+            case "UPDATE" -> Kind.UPDATE;
+            case "DELETE" -> Kind.DELETE;
+            default -> Kind.OTHER;
+        };
+    }
+}
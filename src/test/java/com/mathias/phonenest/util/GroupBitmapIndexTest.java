@@ -0,0 +1,77 @@
+package com.mathias.phonenest.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GroupBitmapIndexTest {
+
+    private static final long WORK = 1;
+    private static final long FAMILY = 2;
+    private static final long GOLF = 3;
+
+    private final GroupBitmapIndex index = new GroupBitmapIndex();
+
+    @BeforeEach
+    void loadIndex() {
+        // Contacts 1-6: 1 and 2 in WORK only, 3 in WORK and FAMILY, 4 in FAMILY, 5 in GOLF, 6 in nothing.
+        Roaring64NavigableMap contacts = Roaring64NavigableMap.bitmapOf(1, 2, 3, 4, 5, 6);
+        Map<Long, Roaring64NavigableMap> members = new HashMap<>();
+        members.put(WORK, Roaring64NavigableMap.bitmapOf(1, 2, 3));
+        members.put(FAMILY, Roaring64NavigableMap.bitmapOf(3, 4));
+        members.put(GOLF, Roaring64NavigableMap.bitmapOf(5));
+        index.replace(contacts, members);
+    }
+
+    @Test
+    void combinesAllAnyAndNone() {
+        assertEquals(List.of(1L, 2L), index.select(List.of(WORK), List.of(), List.of(FAMILY), null, 10));
+        assertEquals(List.of(3L), index.select(List.of(WORK, FAMILY), List.of(), List.of(), null, 10));
+        assertEquals(List.of(1L, 2L, 3L, 5L), index.select(List.of(), List.of(WORK, GOLF), List.of(), null, 10));
+        assertEquals(List.of(6L), index.select(List.of(), List.of(), List.of(WORK, FAMILY, GOLF), null, 10));
+    }
+
+    @Test
+    void pagesInIdOrder() {
+        List<Long> allOf = List.of();
+        List<Long> anyOf = List.of(WORK, FAMILY);
+
+        assertEquals(List.of(1L, 2L), index.select(allOf, anyOf, List.of(), null, 2));
+        assertEquals(List.of(3L, 4L), index.select(allOf, anyOf, List.of(), 2L, 2));
+        assertEquals(List.of(), index.select(allOf, anyOf, List.of(), 4L, 2));
+    }
+
+    @Test
+    void changesAreVisibleToQueries() {
+        index.put(6, List.of(GOLF));
+        index.put(3, List.of(GOLF));
+        index.removeAll(List.of(5L));
+
+        assertEquals(List.of(3L, 6L), index.select(List.of(GOLF), List.of(), List.of(), null, 10));
+        assertEquals(List.of(4L), index.select(List.of(FAMILY), List.of(), List.of(), null, 10));
+        assertEquals(List.of(GOLF), index.groupsOf(3));
+        assertEquals(2, index.count(WORK));
+    }
+
+    @Test
+    void rebuildKeepsChangesMadeWhileItLoads() {
+        index.rebuild((contacts, members) -> {
+            // The scans read a state from before these changes.
+            index.put(7, List.of(GOLF));
+            index.removeAll(List.of(5L));
+            contacts.add(1L, 7L);
+            members.put(WORK, Roaring64NavigableMap.bitmapOf(1, 2, 3));
+            members.put(GOLF, Roaring64NavigableMap.bitmapOf(5));
+        });
+
+        assertEquals(List.of(7L), index.select(List.of(GOLF), List.of(), List.of(), null, 10));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 6L, 7L), index.select(List.of(), List.of(), List.of(), null, 10));
+        assertEquals(List.of(GOLF), index.groupsOf(7));
+    }
+}
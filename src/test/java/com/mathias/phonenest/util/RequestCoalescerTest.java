@@ -0,0 +1,114 @@
+package com.mathias.phonenest.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RequestCoalescerTest {
+
+    @Test
+    void concurrentIdenticalRequestsShareOneExecution() throws Exception {
+        RequestCoalescer<String, Integer> coalescer = new RequestCoalescer<>(Duration.ZERO);
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> coalescer.execute("group:WORK", () -> {
+                    executions.incrementAndGet();
+                    await(release);
+                    return 42;
+                })));
+            }
+            // Let every caller reach the coalescer before the leader finishes.
+            while (coalescer.getRequestCount() < callers) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            for (Future<Integer> result : results) {
+                assertEquals(42, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, executions.get());
+        assertEquals(callers - 1, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    void failuresAreNotRemembered() {
+        RequestCoalescer<String, Integer> coalescer = new RequestCoalescer<>(Duration.ofMinutes(1));
+
+        assertThrows(IllegalStateException.class, () -> coalescer.execute("search:john", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals(7, coalescer.execute("search:john", () -> 7));
+    }
+
+    @Test
+    void resultTtlReusesFinishedResultUntilInvalidated() {
+        RequestCoalescer<String, Integer> coalescer = new RequestCoalescer<>(Duration.ofMinutes(1));
+        AtomicInteger executions = new AtomicInteger();
+
+        coalescer.execute("all", executions::incrementAndGet);
+        coalescer.execute("all", executions::incrementAndGet);
+        assertEquals(1, executions.get());
+
+        coalescer.invalidate();
+        coalescer.execute("all", executions::incrementAndGet);
+        assertEquals(2, executions.get());
+        assertEquals(1.0 / 3, coalescer.getCoalescingRatio(), 1e-9);
+    }
+
+    @Test
+    void loadOverlappingInvalidateIsNotRemembered() throws Exception {
+        RequestCoalescer<String, Integer> coalescer = new RequestCoalescer<>(Duration.ofMinutes(1));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            // This load reads the data before a write and finishes after the write invalidated it.
+            Future<Integer> stale = pool.submit(() -> coalescer.execute("all", () -> {
+                loading.countDown();
+                await(release);
+                return 1;
+            }));
+            await(loading);
+            coalescer.invalidate();
+
+            // A caller arriving after the invalidation does not join the stale load.
+            assertEquals(2, coalescer.execute("all", () -> 2));
+            release.countDown();
+            assertEquals(1, stale.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(2, coalescer.execute("all", () -> 3));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}